@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The occurrences of a set of {@link BlackoutWindow}s within a range of time, for looking up whether a build time
+ * falls in one of them.
+ * <p>
+ * Repeating windows are expanded into their occurrences within the range, and overlapping or adjacent occurrences
+ * are merged, so the calendar is two sorted arrays of disjoint intervals. A lookup is a binary search, which keeps
+ * form validation and scheduling in batches at {@code O(log n)} even with hundreds of windows. Occurrences that
+ * start before the range but last into it are included, so the calendar answers for every time within the range.
+ */
+final class BlackoutCalendar {
+
+    /** Length of the range a calendar is usually built for, long enough to cover most build times. */
+    static final long HORIZON = TimeUnit.DAYS.toMillis(31);
+
+    private final List<BlackoutWindow> windows;
+    private final ZoneId zone;
+    private final long from;
+    private final long to;
+    /** Start of every interval in milliseconds since the epoch, ascending. */
+    private final long[] starts;
+    /** End of every interval, exclusive, at the same index as its start. */
+    private final long[] ends;
+
+    private BlackoutCalendar(
+            List<BlackoutWindow> windows, ZoneId zone, long from, long to, long[] starts, long[] ends) {
+        this.windows = windows;
+        this.zone = zone;
+        this.from = from;
+        this.to = to;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * @param windows the windows, ignoring those whose start is not a valid date and time
+     * @param zone the time zone the starts of the windows are in
+     * @param from start of the range in milliseconds since the epoch
+     * @param to end of the range, exclusive
+     */
+    @NonNull
+    static BlackoutCalendar build(@NonNull List<BlackoutWindow> windows, @NonNull ZoneId zone, long from, long to) {
+        List<long[]> intervals = new ArrayList<>();
+        for (BlackoutWindow window : windows) {
+            LocalDateTime start = window.getStartTime();
+            if (start == null) {
+                continue;
+            }
+            long first = start.atZone(zone).toInstant().toEpochMilli();
+            long duration = window.getDurationMillis();
+            RecurrenceUnit unit = window.getRepeatUnit();
+            if (unit == null) {
+                if (first < to && first + duration > from) {
+                    intervals.add(new long[] {first, first + duration});
+                }
+                continue;
+            }
+            Recurrence recurrence = new Recurrence(unit, 1, first, zone, Recurrence.FOREVER, 0);
+            // The first occurrence that ends after the start of the range
+            for (int i = recurrence.next(-1, from - duration); i >= 0; i = recurrence.next(i, Long.MIN_VALUE)) {
+                long occurrence = recurrence.getTime(i);
+                if (occurrence >= to) {
+                    break;
+                }
+                intervals.add(new long[] {occurrence, occurrence + duration});
+            }
+        }
+        intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+        long[] starts = new long[intervals.size()];
+        long[] ends = new long[intervals.size()];
+        int size = 0;
+        for (long[] interval : intervals) {
+            if (size > 0 && interval[0] <= ends[size - 1]) {
+                ends[size - 1] = Math.max(ends[size - 1], interval[1]);
+            } else {
+                starts[size] = interval[0];
+                ends[size] = interval[1];
+                size++;
+            }
+        }
+        return new BlackoutCalendar(windows, zone, from, to, Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+    }
+
+    /**
+     * @return whether the calendar was built from these windows and time zone
+     */
+    boolean isFor(@NonNull List<BlackoutWindow> windows, @NonNull ZoneId zone) {
+        return this.windows == windows && this.zone.equals(zone);
+    }
+
+    /**
+     * @return whether {@link #endOf(long)} can answer for the time
+     */
+    boolean covers(long time) {
+        return time >= from && time < to;
+    }
+
+    /**
+     * @return end of the range, exclusive
+     */
+    long getTo() {
+        return to;
+    }
+
+    /**
+     * @return number of disjoint intervals in the range
+     */
+    int size() {
+        return starts.length;
+    }
+
+    /**
+     * @param time a time the calendar {@link #covers(long)}
+     * @return end of the interval containing the time, or the time itself if it is in none. An end at or after
+     *     {@link #getTo()} may be followed directly by an occurrence outside the range.
+     */
+    long endOf(long time) {
+        int index = Arrays.binarySearch(starts, time);
+        if (index < 0) {
+            // The interval starting last before the time
+            index = -index - 2;
+        }
+        if (index >= 0 && time < ends[index]) {
+            return ends[index];
+        }
+        return time;
+    }
+}
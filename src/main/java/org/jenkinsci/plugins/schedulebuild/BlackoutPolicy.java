@@ -0,0 +1,23 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+/**
+ * What happens to a build requested for a time within a {@link BlackoutWindow}.
+ */
+public enum BlackoutPolicy {
+    /** Refuse the build time, the user has to pick another one. */
+    REJECT {
+        @Override
+        public String getDisplayName() {
+            return Messages.BlackoutPolicy_REJECT();
+        }
+    },
+    /** Schedule the build for the end of the window instead. */
+    MOVE_TO_END {
+        @Override
+        public String getDisplayName() {
+            return Messages.BlackoutPolicy_MOVE_TO_END();
+        }
+    };
+
+    public abstract String getDisplayName();
+}
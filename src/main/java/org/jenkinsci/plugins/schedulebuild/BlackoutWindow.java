@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+import org.kohsuke.stapler.verb.POST;
+
+/**
+ * Period in which no scheduled build may start, like a maintenance window.
+ * <p>
+ * A window starts at a date and time in the configured time zone and lasts a number of minutes. It happens once, or
+ * repeats every hour, day or week from its start like a {@link Recurrence}. See {@link BlackoutCalendar}.
+ */
+public class BlackoutWindow extends AbstractDescribableImpl<BlackoutWindow> {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final String start;
+    private final int duration;
+    private String repeat;
+
+    /**
+     * @param start date and time of the first occurrence, in any format accepted for build times
+     * @param duration length of every occurrence in minutes, at least 1
+     */
+    @DataBoundConstructor
+    public BlackoutWindow(String start, int duration) {
+        LocalDateTime parsed = ScheduleTimeParser.tryParseDateTime(start);
+        // An invalid start is kept as entered so the form shows it, the window is ignored until it is fixed
+        this.start = parsed == null ? Util.fixNull(start).trim() : parsed.format(DATE_TIME_FORMATTER);
+        this.duration = Math.max(1, duration);
+        this.repeat = "";
+    }
+
+    @NonNull
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * @return length of every occurrence in minutes
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return name of the {@link RecurrenceUnit} the window repeats every one of, empty for a one-off window
+     */
+    @NonNull
+    public String getRepeat() {
+        return repeat;
+    }
+
+    @DataBoundSetter
+    public void setRepeat(String repeat) {
+        String unit = Util.fixEmptyAndTrim(repeat);
+        this.repeat = unit == null ? "" : RecurrenceUnit.valueOf(unit).name();
+    }
+
+    /**
+     * @return the start, or {@code null} if it is not a valid date and time
+     */
+    @CheckForNull
+    LocalDateTime getStartTime() {
+        return ScheduleTimeParser.tryParseDateTime(start);
+    }
+
+    long getDurationMillis() {
+        return TimeUnit.MINUTES.toMillis(duration);
+    }
+
+    @CheckForNull
+    RecurrenceUnit getRepeatUnit() {
+        return repeat.isEmpty() ? null : RecurrenceUnit.valueOf(repeat);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlackoutWindow)) {
+            return false;
+        }
+        BlackoutWindow other = (BlackoutWindow) o;
+        return start.equals(other.start) && duration == other.duration && repeat.equals(other.repeat);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, duration, repeat);
+    }
+
+    @Override
+    public String toString() {
+        String every = repeat.isEmpty() ? "" : ", every " + repeat;
+        return "BlackoutWindow[" + start + ", " + duration + " min" + every + "]";
+    }
+
+    @Extension
+    @Symbol("blackoutWindow")
+    public static class DescriptorImpl extends Descriptor<BlackoutWindow> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.BlackoutWindow_DisplayName();
+        }
+
+        @RequirePOST
+        public FormValidation doCheckStart(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (ScheduleTimeParser.tryParseDateTime(value) == null) {
+                return FormValidation.error(Messages.ScheduleBuildAction_ParsingError());
+            }
+            return FormValidation.ok();
+        }
+
+        @POST
+        public ListBoxModel doFillRepeatItems() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            ListBoxModel items = new ListBoxModel();
+            items.add(Messages.BlackoutWindow_Once(), "");
+            for (RecurrenceUnit unit : RecurrenceUnit.values()) {
+                items.add(unit.getDisplayName(), unit.name());
+            }
+            return items;
+        }
+    }
+}
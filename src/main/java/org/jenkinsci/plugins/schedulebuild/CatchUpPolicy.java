@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What to do with scheduled builds whose due time passed while Jenkins was not running.
+ */
+public enum CatchUpPolicy {
+    /** Start every missed build. */
+    FIRE {
+        @Override
+        public String getDisplayName() {
+            return Messages.CatchUpPolicy_FIRE();
+        }
+
+        @Override
+        List<ScheduledBuild> discard(List<ScheduledBuild> missed) {
+            return new ArrayList<>();
+        }
+    },
+    /** Drop every missed build. */
+    SKIP {
+        @Override
+        public String getDisplayName() {
+            return Messages.CatchUpPolicy_SKIP();
+        }
+
+        @Override
+        List<ScheduledBuild> discard(List<ScheduledBuild> missed) {
+            return new ArrayList<>(missed);
+        }
+    },
+    /** Start only the latest missed build of each job and parameter combination. */
+    COALESCE {
+        @Override
+        public String getDisplayName() {
+            return Messages.CatchUpPolicy_COALESCE();
+        }
+
+        @Override
+        List<ScheduledBuild> discard(List<ScheduledBuild> missed) {
+            Map<List<Object>, ScheduledBuild> latest = new HashMap<>();
+            List<ScheduledBuild> discarded = new ArrayList<>();
+            for (ScheduledBuild build : missed) {
+                List<Object> key = Arrays.asList(build.getJobFullName(), build.getParameters());
+                ScheduledBuild previous = latest.get(key);
+                if (previous == null) {
+                    latest.put(key, build);
+                } else if (ScheduledBuild.BY_DUE_TIME.compare(previous, build) < 0) {
+                    latest.put(key, build);
+                    discarded.add(previous);
+                } else {
+                    discarded.add(build);
+                }
+            }
+            return discarded;
+        }
+    };
+
+    public abstract String getDisplayName();
+
+    /**
+     * Selects the missed builds that should not be started.
+     * @param missed builds whose due time has passed
+     * @return the builds to discard
+     */
+    @NonNull
+    abstract List<ScheduledBuild> discard(@NonNull List<ScheduledBuild> missed);
+}
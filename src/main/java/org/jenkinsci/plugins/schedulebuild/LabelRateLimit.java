@@ -0,0 +1,130 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Label;
+import hudson.util.FormValidation;
+import java.util.Objects;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Maximum rate at which scheduled builds of jobs restricted to a label expression are handed to the queue.
+ * <p>
+ * The limit is a token bucket: it holds up to {@link #getBurst()} builds worth of tokens and gains
+ * {@link #getBuildsPerMinute()} of them per minute, and every released build takes one. See {@link ReleaseThrottle}.
+ */
+public class LabelRateLimit extends AbstractDescribableImpl<LabelRateLimit> {
+
+    private final String label;
+    private final int buildsPerMinute;
+    private int burst;
+
+    /**
+     * @param label the label expression jobs are restricted to, empty for jobs that can run anywhere
+     * @param buildsPerMinute builds released per minute once the burst is used up, at least 1
+     */
+    @DataBoundConstructor
+    public LabelRateLimit(String label, int buildsPerMinute) {
+        this.label = Util.fixNull(label).trim();
+        this.buildsPerMinute = Math.max(1, buildsPerMinute);
+        this.burst = this.buildsPerMinute;
+    }
+
+    @NonNull
+    public String getLabel() {
+        return label;
+    }
+
+    public int getBuildsPerMinute() {
+        return buildsPerMinute;
+    }
+
+    /**
+     * @return number of builds released at once after a quiet time, which is the number of builds per minute
+     *     unless set otherwise
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    @DataBoundSetter
+    public void setBurst(int burst) {
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * @return the label expression in the form {@link Label#getExpression()} returns for a job restricted to it
+     */
+    @NonNull
+    String getExpression() {
+        return expression(label);
+    }
+
+    @NonNull
+    static String expression(@NonNull String label) {
+        if (label.isEmpty()) {
+            return label;
+        }
+        try {
+            return Label.parseExpression(label).getExpression();
+        } catch (IllegalArgumentException e) {
+            return label;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LabelRateLimit)) {
+            return false;
+        }
+        LabelRateLimit other = (LabelRateLimit) o;
+        return label.equals(other.label) && buildsPerMinute == other.buildsPerMinute && burst == other.burst;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(label, buildsPerMinute, burst);
+    }
+
+    @Override
+    public String toString() {
+        return "LabelRateLimit[" + label + ", " + buildsPerMinute + "/min, burst " + burst + "]";
+    }
+
+    @Extension
+    @Symbol("labelRateLimit")
+    public static class DescriptorImpl extends Descriptor<LabelRateLimit> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.LabelRateLimit_DisplayName();
+        }
+
+        @RequirePOST
+        public FormValidation doCheckLabel(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            String label = Util.fixEmptyAndTrim(value);
+            if (label == null) {
+                return FormValidation.ok(Messages.LabelRateLimit_AnyNode());
+            }
+            try {
+                Label.parseExpression(label);
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e, Messages.LabelRateLimit_InvalidLabel(label));
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Lock-free histogram of durations in milliseconds, with power of two buckets.
+ * <p>
+ * Bucket {@code 0} counts durations of {@code 0}, bucket {@code b} counts durations from {@code 2^(b-1)} to
+ * {@code 2^b - 1}. Recording is a few atomic increments, so it can be called on the build path without locking;
+ * percentiles are accurate to within a factor of two, which is enough to tell seconds from minutes.
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param millis the duration to record, negative durations are recorded as {@code 0}
+     */
+    void record(long millis) {
+        long value = Math.max(0, millis);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between {@code 0} and {@code 1}
+     * @return the upper bound of the bucket holding the quantile, capped at the maximum recorded duration
+     */
+    long getPercentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            snapshot[b] = buckets.get(b);
+            total += snapshot[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += snapshot[b];
+            if (seen >= rank && snapshot[b] > 0) {
+                return Math.min(upperBound(b), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    JSONObject toJSON() {
+        long n = getCount();
+        JSONArray nonEmpty = new JSONArray();
+        for (int b = 0; b < BUCKETS; b++) {
+            long c = buckets.get(b);
+            if (c > 0) {
+                nonEmpty.add(new JSONObject().element("le", upperBound(b)).element("count", c));
+            }
+        }
+        return new JSONObject()
+                .element("count", n)
+                .element("mean", n == 0 ? 0 : sum.sum() / n)
+                .element("p50", getPercentile(0.5))
+                .element("p95", getPercentile(0.95))
+                .element("p99", getPercentile(0.99))
+                .element("max", getMax())
+                .element("buckets", nonEmpty);
+    }
+
+    private static long upperBound(int bucket) {
+        return (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+/**
+ * Whether scheduled builds are spread out so that they do not all start at the same time.
+ */
+public enum LevelingMode {
+    /** Keep every requested time. */
+    OFF {
+        @Override
+        public String getDisplayName() {
+            return Messages.LevelingMode_OFF();
+        }
+    },
+    /** Propose the least loaded time near the default start time on the schedule page. */
+    SUGGEST {
+        @Override
+        public String getDisplayName() {
+            return Messages.LevelingMode_SUGGEST();
+        }
+    },
+    /** Also move newly scheduled builds to the least loaded time within the leveling window. */
+    SPREAD {
+        @Override
+        public String getDisplayName() {
+            return Messages.LevelingMode_SPREAD();
+        }
+    };
+
+    public abstract String getDisplayName();
+}
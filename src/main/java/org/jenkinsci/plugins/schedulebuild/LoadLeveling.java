@@ -0,0 +1,187 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+
+/**
+ * Spreads scheduled builds over time so that builds scheduled for the same popular time, typically the default
+ * start time, do not all hit executors, SCM servers and clouds at once.
+ * <p>
+ * Time is divided into slots of one minute per label expression. A slot is full once it holds as many pending
+ * builds of jobs with that label as there are online executors for the label, and leveling moves a time to the
+ * first slot of the configured window that is not full, keeping the seconds of the requested time. Slots whose
+ * time falls in a {@link BlackoutWindow} are skipped, so a time already out of the windows stays out of them.
+ */
+final class LoadLeveling {
+
+    static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private LoadLeveling() {}
+
+    /**
+     * Time to propose on the schedule page.
+     * @param job the job to schedule
+     * @param time the preferred time in milliseconds since the epoch
+     * @return the least loaded time near {@code time}, or {@code time} if leveling is off
+     */
+    static long suggest(@NonNull Job<?, ?> job, long time) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        if (config.getLevelingMode() == LevelingMode.OFF) {
+            return time;
+        }
+        return level(job, time, config, Collections.emptyMap());
+    }
+
+    /**
+     * Time to actually schedule a build at.
+     * @param job the job to schedule
+     * @param time the requested time in milliseconds since the epoch
+     * @return the least loaded time near {@code time} if new schedules are spread, otherwise {@code time}
+     */
+    static long apply(@NonNull Job<?, ?> job, long time) {
+        return apply(job, time, new HashMap<>());
+    }
+
+    /**
+     * Time to actually schedule one of several builds at, which are added to the store together.
+     * @param job the job to schedule
+     * @param time the requested time in milliseconds since the epoch
+     * @param batch slots taken by earlier builds of the same batch, updated with the returned time
+     * @return the least loaded time near {@code time} if new schedules are spread, otherwise {@code time}
+     */
+    static long apply(@NonNull Job<?, ?> job, long time, @NonNull Map<Slot, Integer> batch) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        if (config.getLevelingMode() != LevelingMode.SPREAD) {
+            return time;
+        }
+        long leveled = level(job, time, config, batch);
+        batch.merge(new Slot(label(job), leveled), 1, Integer::sum);
+        return leveled;
+    }
+
+    private static long level(
+            Job<?, ?> job, long time, ScheduleBuildGlobalConfiguration config, Map<Slot, Integer> reserved) {
+        long window = TimeUnit.SECONDS.toMillis(config.getLevelingWindow());
+        return ScheduledBuildStore.get()
+                .leastLoadedTime(label(job), time, window, capacity(job), reserved, t -> config.getBlackoutEnd(t) == t);
+    }
+
+    /**
+     * How many builds of {@code job} can start together, which is the number of online executors that can run it.
+     */
+    static int capacity(@NonNull Job<?, ?> job) {
+        int executors = 0;
+        for (Computer computer : computers(job)) {
+            if (computer.isOnline()) {
+                executors += computer.countExecutors();
+            }
+        }
+        return Math.max(1, executors);
+    }
+
+    /**
+     * @return the computers of the nodes the job's label matches, or all computers if the job can run anywhere
+     */
+    @NonNull
+    static Collection<Computer> computers(@NonNull Job<?, ?> job) {
+        Label label = job instanceof Queue.Task ? ((Queue.Task) job).getAssignedLabel() : null;
+        if (label == null) {
+            return Arrays.asList(Jenkins.get().getComputers());
+        }
+        List<Computer> computers = new ArrayList<>();
+        for (Node node : label.getNodes()) {
+            Computer computer = node.toComputer();
+            if (computer != null) {
+                computers.add(computer);
+            }
+        }
+        return computers;
+    }
+
+    /**
+     * @return the label expression of the job, empty if it can run anywhere or is {@code null}
+     */
+    @NonNull
+    static String label(@CheckForNull Job<?, ?> job) {
+        Label label = job instanceof Queue.Task ? ((Queue.Task) job).getAssignedLabel() : null;
+        return label == null ? "" : label.getExpression();
+    }
+
+    /**
+     * @return the label expression of the job, empty if it can run anywhere or no longer exists
+     */
+    @NonNull
+    static String label(@NonNull String jobFullName) {
+        // Scheduled builds are counted whoever looks at them
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            return label(Jenkins.get().getItemByFullName(jobFullName, Job.class));
+        }
+    }
+
+    /**
+     * A {@link #SLOT_MILLIS} slot of the builds of one label expression.
+     */
+    static final class Slot {
+        private final String label;
+        private final long minute;
+
+        /**
+         * @param label the label expression, empty for jobs that can run anywhere
+         * @param time a time within the slot, in milliseconds since the epoch
+         */
+        Slot(@NonNull String label, long time) {
+            this.label = label;
+            this.minute = Math.floorDiv(time, SLOT_MILLIS);
+        }
+
+        /**
+         * @return the start of the slot in milliseconds since the epoch
+         */
+        long getStart() {
+            return minute * SLOT_MILLIS;
+        }
+
+        /**
+         * @return the slot following this one for the same label
+         */
+        @NonNull
+        Slot next() {
+            return new Slot(label, getStart() + SLOT_MILLIS);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Slot)) {
+                return false;
+            }
+            Slot other = (Slot) o;
+            return minute == other.minute && label.equals(other.label);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * label.hashCode() + Long.hashCode(minute);
+        }
+
+        @Override
+        public String toString() {
+            return "Slot[" + label + ", " + getStart() + "]";
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * Rule repeating a {@link ScheduledBuild}.
+ * <p>
+ * Occurrence {@code n} is {@code n * interval} units after the first one. Occurrences are always computed from
+ * the first one rather than from the previous one, so daily and weekly builds keep their wall clock time across
+ * daylight saving time changes. Only the next occurrence of a recurring build is ever computed, when the current
+ * one is released, and it takes constant time no matter how many occurrences were missed. A recurring build is a
+ * single entry in the {@link ScheduledBuildStore}, so there is nothing to evaluate every minute like for cron
+ * triggers.
+ */
+public final class Recurrence {
+
+    /** {@link #getUntil()} of a recurrence without end date. */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private static final DateTimeFormatter UNTIL_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final RecurrenceUnit unit;
+    private final int interval;
+    private final long start;
+    private final ZoneId zone;
+    private final long until;
+    private final int count;
+
+    /**
+     * @param unit the unit of the interval
+     * @param interval number of units between occurrences, at least 1
+     * @param start time of the first occurrence in milliseconds since the epoch
+     * @param zone the time zone days and weeks are counted in
+     * @param until no occurrence is later than this time, {@link #FOREVER} for no end date
+     * @param count maximum number of occurrences, 0 for no limit
+     * @throws IllegalArgumentException if the interval or count is out of range, or the end date is before the start
+     */
+    public Recurrence(
+            @NonNull RecurrenceUnit unit, int interval, long start, @NonNull ZoneId zone, long until, int count) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1: " + interval);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        if (until < start) {
+            throw new IllegalArgumentException("End date is before the first occurrence");
+        }
+        this.unit = unit;
+        this.interval = interval;
+        this.start = start;
+        this.zone = zone;
+        this.until = until;
+        this.count = count;
+    }
+
+    @NonNull
+    public RecurrenceUnit getUnit() {
+        return unit;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return time of the first occurrence in milliseconds since the epoch
+     */
+    public long getStart() {
+        return start;
+    }
+
+    @NonNull
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @return latest time of an occurrence in milliseconds since the epoch, or {@link #FOREVER}
+     */
+    public long getUntil() {
+        return until;
+    }
+
+    /**
+     * @return maximum number of occurrences, or 0 for no limit
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Moves the recurrence to a different first occurrence, keeping all other properties.
+     * @param start time of the first occurrence in milliseconds since the epoch
+     * @return the moved recurrence
+     */
+    @NonNull
+    Recurrence withStart(long start) {
+        return start == this.start ? this : new Recurrence(unit, interval, start, zone, Math.max(until, start), count);
+    }
+
+    /**
+     * @param occurrence index of an occurrence, 0 for the first one
+     * @return time of the occurrence in milliseconds since the epoch
+     */
+    long getTime(long occurrence) {
+        return unit.add(start, zone, occurrence * interval);
+    }
+
+    /**
+     * Finds the occurrence following {@code previous} that is later than {@code time}.
+     * @param previous index of the previous occurrence
+     * @param time occurrences at or before this time are skipped
+     * @return index of the next occurrence, or {@code -1} if the recurrence ended
+     */
+    int next(int previous, long time) {
+        long index = previous + 1L;
+        if (getTime(index) <= time) {
+            // Jump close to the answer instead of stepping through every missed occurrence. Daylight saving time
+            // changes move wall clock occurrences by less than one unit, so the estimate is at most one too high.
+            long estimate = (time - start) / (unit.getApproximateMillis() * interval);
+            index = Math.max(index, estimate - 1);
+            while (getTime(index) <= time) {
+                index++;
+            }
+        }
+        if ((count > 0 && index >= count) || index > Integer.MAX_VALUE || getTime(index) > until) {
+            return -1;
+        }
+        return (int) index;
+    }
+
+    /**
+     * @return human readable description, like "every 2 days until 31-12-2030 22:00:00"
+     */
+    @NonNull
+    public String getDescription() {
+        String description = unit.describe(interval);
+        if (until != FOREVER) {
+            description = Messages.Recurrence_Until(
+                    description, Instant.ofEpochMilli(until).atZone(zone).format(UNTIL_FORMATTER));
+        }
+        if (count > 0) {
+            description = Messages.Recurrence_Times(description, count);
+        }
+        return description;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Recurrence)) {
+            return false;
+        }
+        Recurrence other = (Recurrence) o;
+        return unit == other.unit
+                && interval == other.interval
+                && start == other.start
+                && zone.equals(other.zone)
+                && until == other.until
+                && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(unit, interval, start, zone, until, count);
+    }
+
+    @Override
+    public String toString() {
+        return "Recurrence[" + unit + " x" + interval + " from " + start + " in " + zone + ", until " + until
+                + ", count " + count + "]";
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The unit of the interval between the occurrences of a {@link Recurrence}.
+ */
+public enum RecurrenceUnit {
+    /** A fixed number of hours, regardless of the time zone. */
+    HOURS(TimeUnit.HOURS.toMillis(1)) {
+        @Override
+        public String getDisplayName() {
+            return Messages.RecurrenceUnit_HOURS();
+        }
+
+        @Override
+        String describe(int interval) {
+            return Messages.RecurrenceUnit_HOURS_Every(interval);
+        }
+
+        @Override
+        long add(long time, ZoneId zone, long amount) {
+            return time + amount * getApproximateMillis();
+        }
+    },
+    /** Days, keeping the wall clock time in the time zone of the recurrence. */
+    DAYS(TimeUnit.DAYS.toMillis(1)) {
+        @Override
+        public String getDisplayName() {
+            return Messages.RecurrenceUnit_DAYS();
+        }
+
+        @Override
+        String describe(int interval) {
+            return Messages.RecurrenceUnit_DAYS_Every(interval);
+        }
+
+        @Override
+        long add(long time, ZoneId zone, long amount) {
+            return Instant.ofEpochMilli(time).atZone(zone).plusDays(amount).toInstant().toEpochMilli();
+        }
+    },
+    /** Weeks, keeping the wall clock time in the time zone of the recurrence. */
+    WEEKS(TimeUnit.DAYS.toMillis(7)) {
+        @Override
+        public String getDisplayName() {
+            return Messages.RecurrenceUnit_WEEKS();
+        }
+
+        @Override
+        String describe(int interval) {
+            return Messages.RecurrenceUnit_WEEKS_Every(interval);
+        }
+
+        @Override
+        long add(long time, ZoneId zone, long amount) {
+            return Instant.ofEpochMilli(time).atZone(zone).plusWeeks(amount).toInstant().toEpochMilli();
+        }
+    };
+
+    private final long approximateMillis;
+
+    RecurrenceUnit(long approximateMillis) {
+        this.approximateMillis = approximateMillis;
+    }
+
+    public abstract String getDisplayName();
+
+    /**
+     * @param interval number of units between occurrences
+     * @return human readable interval, like "every 2 days"
+     */
+    abstract String describe(int interval);
+
+    /**
+     * Adds an amount of this unit to a time.
+     * @param time milliseconds since the epoch
+     * @param zone the time zone wall clock units are counted in
+     * @param amount number of units to add
+     * @return the resulting time in milliseconds since the epoch
+     */
+    abstract long add(long time, ZoneId zone, long amount);
+
+    /**
+     * @return length of one unit in milliseconds, ignoring daylight saving time changes
+     */
+    long getApproximateMillis() {
+        return approximateMillis;
+    }
+}
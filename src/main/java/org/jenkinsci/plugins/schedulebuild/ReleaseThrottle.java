@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Release stage between the {@link ScheduledBuildStore} and the {@link hudson.model.Queue}, holding back due builds
+ * of labels that have a {@link LabelRateLimit}.
+ * <p>
+ * Builds of a label with a limit are held until they are due rather than handed over within the release lead
+ * time, otherwise they would all leave the queue's quiet period together. Each limit is a token bucket. Tokens are
+ * counted in integer units, one build costs {@link #COST} units and a bucket gains
+ * {@link LabelRateLimit#getBuildsPerMinute()} units per millisecond, so the same clock readings always release the
+ * same builds. Builds held by a bucket are released round-robin between jobs, and in due time order within a job,
+ * so many builds of one job do not delay the builds of other jobs sharing the label. Once a bucket is empty,
+ * {@code n} due builds are all released within {@code n / buildsPerMinute} minutes.
+ * <p>
+ * Builds of labels without a limit pass straight through. Time is always passed in, never read from the system
+ * clock.
+ */
+final class ReleaseThrottle {
+
+    /** Units of one token. */
+    static final long COST = TimeUnit.MINUTES.toMillis(1);
+
+    /** Buckets by {@link LabelRateLimit#getExpression()}. */
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private final List<LabelRateLimit> limits;
+
+    /** Due builds without a limit, released on the next poll. */
+    private final List<ScheduledBuild> unlimited = new ArrayList<>();
+
+    /**
+     * @param limits the configured limits, the first one wins if several have the same label expression
+     * @param now the current time in milliseconds, buckets start full
+     */
+    ReleaseThrottle(@NonNull List<LabelRateLimit> limits, long now) {
+        this.limits = List.copyOf(limits);
+        for (LabelRateLimit limit : limits) {
+            buckets.putIfAbsent(limit.getExpression(), new Bucket(limit, now));
+        }
+    }
+
+    /**
+     * @return the limits this throttle was created with
+     */
+    @NonNull
+    List<LabelRateLimit> getLimits() {
+        return limits;
+    }
+
+    /**
+     * Adds a due build to release as soon as its label's bucket allows.
+     * @param build the due build
+     * @param label the {@link hudson.model.Label#getExpression()} of the job's label, empty if it can run anywhere
+     */
+    void hold(@NonNull ScheduledBuild build, @NonNull String label) {
+        Bucket bucket = buckets.get(label);
+        if (bucket == null) {
+            unlimited.add(build);
+        } else {
+            bucket.hold(build);
+        }
+    }
+
+    /**
+     * Takes the builds that may be handed to the queue now.
+     * @param now the current time in milliseconds
+     * @return the builds without a limit, then the builds each bucket has tokens for
+     */
+    @NonNull
+    List<ScheduledBuild> poll(long now) {
+        List<ScheduledBuild> released = new ArrayList<>(unlimited);
+        unlimited.clear();
+        for (Bucket bucket : buckets.values()) {
+            bucket.release(now, released);
+        }
+        return released;
+    }
+
+    /**
+     * @return number of builds held back
+     */
+    int size() {
+        int size = unlimited.size();
+        for (Bucket bucket : buckets.values()) {
+            size += bucket.held;
+        }
+        return size;
+    }
+
+    /**
+     * @return a copy of the held builds
+     */
+    @NonNull
+    List<ScheduledBuild> getHeld() {
+        List<ScheduledBuild> held = new ArrayList<>(unlimited);
+        for (Bucket bucket : buckets.values()) {
+            for (Collection<ScheduledBuild> builds : bucket.byJob.values()) {
+                held.addAll(builds);
+            }
+            held.addAll(bucket.early);
+        }
+        return held;
+    }
+
+    /**
+     * Takes every held build regardless of the limits.
+     * @return the held builds
+     */
+    @NonNull
+    List<ScheduledBuild> drain() {
+        List<ScheduledBuild> drained = getHeld();
+        unlimited.clear();
+        for (Bucket bucket : buckets.values()) {
+            bucket.byJob.clear();
+            bucket.early.clear();
+            bucket.held = 0;
+        }
+        return drained;
+    }
+
+    private static final class Bucket {
+        private final long rate;
+        private final long capacity;
+        private long credit;
+        private long updated;
+
+        /** Held builds that are not due yet. */
+        private final PriorityQueue<ScheduledBuild> early = new PriorityQueue<>(ScheduledBuild.BY_DUE_TIME);
+
+        /** Held builds that are due, by job, in the order the jobs take turns. */
+        private final Map<String, Deque<ScheduledBuild>> byJob = new LinkedHashMap<>();
+
+        private int held;
+
+        Bucket(LabelRateLimit limit, long now) {
+            rate = limit.getBuildsPerMinute();
+            capacity = limit.getBurst() * COST;
+            credit = capacity;
+            updated = now;
+        }
+
+        void hold(ScheduledBuild build) {
+            early.add(build);
+            held++;
+        }
+
+        void release(long now, List<ScheduledBuild> released) {
+            while (!early.isEmpty() && early.peek().getDueTime() <= now) {
+                ScheduledBuild due = early.poll();
+                byJob.computeIfAbsent(due.getJobFullName(), job -> new ArrayDeque<>()).add(due);
+            }
+            // A clock going backwards adds nothing, and a long pause can at most fill the bucket
+            long elapsed = Math.min(Math.max(0, now - updated), capacity);
+            credit = Math.min(capacity, credit + elapsed * rate);
+            updated = now;
+            while (!byJob.isEmpty() && credit >= COST) {
+                Iterator<Map.Entry<String, Deque<ScheduledBuild>>> turn = byJob.entrySet().iterator();
+                Map.Entry<String, Deque<ScheduledBuild>> next = turn.next();
+                turn.remove();
+                released.add(next.getValue().poll());
+                if (!next.getValue().isEmpty()) {
+                    byJob.put(next.getKey(), next.getValue());
+                }
+                credit -= COST;
+                held--;
+            }
+        }
+    }
+}
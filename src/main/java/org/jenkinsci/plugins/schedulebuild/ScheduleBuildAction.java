@@ -1,19 +1,33 @@
 package org.jenkinsci.plugins.schedulebuild;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Util;
 import hudson.model.Action;
 import hudson.model.Descriptor.FormException;
 import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.User;
 import hudson.util.FormValidation;
+import jakarta.servlet.ServletException;
+import java.lang.ref.WeakReference;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.jenkins.ui.icon.IconSpec;
 import org.kohsuke.accmod.Restricted;
@@ -30,23 +44,24 @@ public class ScheduleBuildAction implements Action, StaplerProxy, IconSpec {
 
     private static final Logger LOGGER = Logger.getLogger(ScheduleBuildAction.class.getName());
 
-    private final Job<?, ?> target;
-    private static final long SECURITY_MARGIN = 120;
+    /**
+     * Weak, so that {@link ScheduleBuildTransientProjectActionFactory} can keep the action keyed by its job without
+     * the cached action keeping the job alive. The factory drops the action with the job, so the job is always still
+     * there when the action is used.
+     */
+    private final WeakReference<Job<?, ?>> target;
+    static final long SECURITY_MARGIN = 120;
 
-    private static final String DATE_TIME_PATTERN = "dd-MM-yyyy HH:mm:ss";
+    static final String DATE_TIME_PATTERN = "dd-MM-yyyy HH:mm:ss";
 
-    private static final DateTimeFormatter[] FORMATTERS = {
-        DateTimeFormatter.ofPattern("d-M-y H:m[:s]"), DateTimeFormatter.ofPattern("d-M-y h:m[:s] a", Locale.ROOT),
-    };
-
-    private long quietperiod;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_PATTERN);
 
     public ScheduleBuildAction(final Job<?, ?> target) {
-        this.target = target;
+        this.target = new WeakReference<>(target);
     }
 
     public Job<?, ?> getOwner() {
-        return target;
+        return target.get();
     }
 
     @Override
@@ -56,14 +71,14 @@ public class ScheduleBuildAction implements Action, StaplerProxy, IconSpec {
 
     @Override
     public String getIconClassName() {
-        return target.hasPermission(Job.BUILD) && this.target.isBuildable()
+        return getOwner().hasPermission(Job.BUILD) && getOwner().isBuildable()
                 ? "symbol-calendar-outline plugin-ionicons-api"
                 : null;
     }
 
     @Override
     public String getDisplayName() {
-        return target.hasPermission(Job.BUILD) && this.target.isBuildable()
+        return getOwner().hasPermission(Job.BUILD) && getOwner().isBuildable()
                 ? Messages.ScheduleBuildAction_DisplayName()
                 : null;
     }
@@ -79,12 +94,12 @@ public class ScheduleBuildAction implements Action, StaplerProxy, IconSpec {
 
     @Override
     public Object getTarget() {
-        target.checkPermission(Job.BUILD);
+        getOwner().checkPermission(Job.BUILD);
         return this;
     }
 
     public String getDefaultDate() {
-        return getDefaultDateObject().format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN));
+        return getDefaultDateObject().format(DATE_TIME_FORMATTER);
     }
 
     public ZonedDateTime getDefaultDateObject() {
@@ -93,14 +108,12 @@ public class ScheduleBuildAction implements Action, StaplerProxy, IconSpec {
         if (now.isAfter(zdt)) {
             zdt = zdt.plusDays(1);
         }
-        return zdt;
+        long suggested = LoadLeveling.suggest(getOwner(), zdt.toInstant().toEpochMilli());
+        return zdt.plus(suggested - zdt.toInstant().toEpochMilli(), ChronoUnit.MILLIS);
     }
 
     public String getMinDate() {
-        ZonedDateTime now = ZonedDateTime.now();
-        ZonedDateTime zonedNow =
-                now.withZoneSameInstant(ScheduleBuildGlobalConfiguration.get().getZoneId());
-        return zonedNow.format(DateTimeFormatter.ofPattern(DATE_TIME_PATTERN));
+        return ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId()).format(DATE_TIME_FORMATTER);
     }
 
     @RequirePOST
@@ -110,67 +123,316 @@ public class ScheduleBuildAction implements Action, StaplerProxy, IconSpec {
         }
         // User requesting a build needs permission to start the build
         item.checkPermission(Item.BUILD);
+        LocalDateTime parsed = ScheduleTimeParser.tryParseDateTime(value);
+        FormValidation validation = checkDate(parsed);
+        // Only a time the build would be scheduled at gets a prediction, not one still being typed or rejected
+        if (validation.kind == FormValidation.Kind.ERROR) {
+            return validation;
+        }
+        String prediction = predict(parsed.atZone(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .toInstant()
+                .toEpochMilli());
+        // A time moved out of a blackout window may be leveled further, the prediction tells where it ends up
+        return validation.kind == FormValidation.Kind.OK
+                ? FormValidation.ok(prediction)
+                : FormValidation.warning(Messages.ScheduleBuildAction_MovedOutOfBlackoutAndPredicted(prediction));
+    }
+
+    /**
+     * Describes when a build requested for a time is expected to run. The check of the build time runs after the
+     * page is rendered and whenever the time changes, so the prediction travels with it instead of slowing the
+     * page down or adding a request.
+     * @param time the requested time in milliseconds since the epoch
+     * @return the expected start and end of the build at the time it would be scheduled for, which is moved out of
+     *     the blackout windows and then leveled like when it is scheduled
+     */
+    private String predict(long time) {
+        long dueTime = LoadLeveling.apply(getOwner(), ScheduleBuildGlobalConfiguration.get().getBlackoutEnd(time));
+        StartTimePredictor.Prediction prediction =
+                StartTimePredictor.get().predict(getOwner(), dueTime, System.currentTimeMillis());
+        if (prediction == null) {
+            return Messages.ScheduleBuildAction_NoExecutorOnline();
+        }
+        String start = formatTime(prediction.start);
+        return prediction.end < 0
+                ? Messages.ScheduleBuildAction_PredictedStart(start)
+                : Messages.ScheduleBuildAction_PredictedStartAndEnd(start, formatTime(prediction.end));
+    }
+
+    /**
+     * Checks that a build time is well formed, not before the security margin and not within a blackout window.
+     */
+    static FormValidation checkDate(String value) {
+        return checkDate(ScheduleTimeParser.tryParseDateTime(value));
+    }
+
+    /**
+     * @param parsed the build time in the configured time zone, {@code null} if it could not be parsed
+     * @see #checkDate(String)
+     */
+    private static FormValidation checkDate(@CheckForNull LocalDateTime parsed) {
         ZonedDateTime now = ZonedDateTime.now();
-        ZonedDateTime ddate;
-        try {
-            ddate = parseDateTime(value.trim())
-                    .atZone(ScheduleBuildGlobalConfiguration.get().getZoneId())
-                    .plusSeconds(SECURITY_MARGIN);
-        } catch (DateTimeParseException ex) {
+        if (parsed == null) {
             return FormValidation.error(Messages.ScheduleBuildAction_ParsingError());
         }
-        if (now.isAfter(ddate)) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        ZonedDateTime ddate = parsed.atZone(config.getZoneId());
+        if (now.isAfter(ddate.plusSeconds(SECURITY_MARGIN))) {
             return FormValidation.error(Messages.ScheduleBuildAction_DateInPastError());
         }
+        long dueTime = ddate.toInstant().toEpochMilli();
+        long end = config.getBlackoutEnd(dueTime);
+        if (end != dueTime) {
+            String formatted = config.formatDateTime(end);
+            return config.getBlackoutPolicy() == BlackoutPolicy.REJECT
+                    ? FormValidation.error(Messages.BlackoutPolicy_Rejected(formatted))
+                    : FormValidation.warning(Messages.ScheduleBuildAction_MovedOutOfBlackout(formatted));
+        }
 
         return FormValidation.ok();
     }
 
-    public long getQuietPeriodInSeconds() {
-        return quietperiod;
-    }
-
+    /**
+     * Schedules the build submitted from the schedule page: the build time, the repeat fields and, for a
+     * parameterized job, the parameter values, which are all validated before anything is scheduled.
+     */
     @RequirePOST
-    public HttpResponse doNext(@QueryParameter String date, @AncestorInPath Item item) {
+    public HttpResponse doNext(
+            StaplerRequest2 req,
+            @QueryParameter String date,
+            @QueryParameter String repeat,
+            @QueryParameter String interval,
+            @QueryParameter String until,
+            @QueryParameter String count,
+            @AncestorInPath Item item)
+            throws ServletException {
         if (item == null) {
             return FormValidation.ok();
         }
         // User requesting a build needs permission to start the build
         item.checkPermission(Item.BUILD);
-        ZonedDateTime ddate, now = ZonedDateTime.now();
+        // The page posts multipart/form-data for file parameters, its fields are then only in the structured form
+        JSONObject form = isMultipart(req) ? req.getSubmittedForm() : null;
+        if (form != null) {
+            date = form.optString("date");
+            repeat = form.optString("repeat");
+            interval = form.optString("interval");
+            until = form.optString("until");
+            count = form.optString("count");
+        }
+        ZonedDateTime ddate;
 
         final String time = date.trim();
         try {
-            ddate = parseDateTime(time)
-                    .atZone(ScheduleBuildGlobalConfiguration.get().getZoneId());
+            ddate = ScheduleTimeParser.parseDateTime(time).atZone(ScheduleBuildGlobalConfiguration.get().getZoneId());
         } catch (DateTimeParseException ex) {
             LOGGER.log(Level.INFO, ex, () -> "Error parsing " + time);
             return HttpResponses.redirectTo("error");
         }
-        quietperiod = ChronoUnit.SECONDS.between(now, ddate);
-        LOGGER.log(Level.FINER, () -> "Quietperiod: " + quietperiod);
-        if (quietperiod + ScheduleBuildAction.SECURITY_MARGIN < 0) { // 120 sec security margin
-            LOGGER.log(Level.INFO, () -> "Error security margin" + quietperiod);
+        long dueTime = ddate.toInstant().toEpochMilli();
+        if (isInPast(dueTime)) {
+            LOGGER.log(Level.INFO, () -> "Error security margin " + time);
+            return HttpResponses.redirectTo("error");
+        }
+        Recurrence recurrence;
+        List<ParameterValue> values = Collections.emptyList();
+        try {
+            dueTime = ScheduleBuildGlobalConfiguration.get().applyBlackoutPolicy(dueTime);
+            recurrence = parseRecurrence(dueTime, repeat, interval, until, count);
+            if (isJobParameterized()) {
+                values = parameterValues(req, form != null ? form : req.getSubmittedForm());
+            }
+        } catch (DateTimeParseException | IllegalArgumentException ex) {
+            LOGGER.log(Level.INFO, ex, () -> "Error reading the submitted schedule of " + getOwner().getFullName());
+            return HttpResponses.redirectTo("error");
+        }
+        schedule(dueTime, values, recurrence);
+        return HttpResponses.redirectTo("..");
+    }
+
+    /**
+     * Moves a pending build of the job to a different build time, keeping its parameters and requesting user.
+     */
+    @RequirePOST
+    public HttpResponse doReschedule(@QueryParameter String id, @QueryParameter String date) {
+        getOwner().checkPermission(Item.BUILD);
+        if (getPendingBuild(id) == null) {
+            LOGGER.log(Level.INFO, () -> "No pending build " + id + " of " + getOwner().getFullName());
+            return HttpResponses.redirectTo("error");
+        }
+        long dueTime;
+        try {
+            dueTime = ScheduleTimeParser.parseDateTime(Util.fixNull(date))
+                    .atZone(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                    .toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            LOGGER.log(Level.INFO, ex, () -> "Error parsing " + date);
+            return HttpResponses.redirectTo("error");
+        }
+        if (isInPast(dueTime)) {
+            LOGGER.log(Level.INFO, () -> "Error security margin " + date);
+            return HttpResponses.redirectTo("error");
+        }
+        try {
+            dueTime = ScheduleBuildGlobalConfiguration.get().applyBlackoutPolicy(dueTime);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.INFO, () -> "Error blackout window " + date);
             return HttpResponses.redirectTo("error");
         }
-        return HttpResponses.forwardToView(this, "redirect");
+        // The build may have been released in the meantime, there is nothing left to move then
+        ScheduledBuildStore.get().reschedule(id, dueTime);
+        return HttpResponses.redirectTo(".");
     }
 
-    private LocalDateTime parseDateTime(String time) {
-        DateTimeParseException exception = null;
-        for (DateTimeFormatter formatter : FORMATTERS) {
-            try {
-                return LocalDateTime.parse(time.toUpperCase(Locale.ROOT), formatter);
-            } catch (DateTimeParseException dtex) {
-                exception = dtex;
-                LOGGER.log(Level.FINE, dtex, () -> "Did not parse '" + time + "' with formatter " + formatter);
+    /**
+     * Removes a pending build of the job.
+     */
+    @RequirePOST
+    public HttpResponse doCancel(@QueryParameter String id) {
+        getOwner().checkPermission(Item.CANCEL);
+        if (getPendingBuild(id) == null) {
+            LOGGER.log(Level.INFO, () -> "No pending build " + id + " of " + getOwner().getFullName());
+            return HttpResponses.redirectTo("error");
+        }
+        ScheduledBuildStore.get().cancel(id);
+        return HttpResponses.redirectTo(".");
+    }
+
+    @CheckForNull
+    private ScheduledBuild getPendingBuild(@CheckForNull String id) {
+        if (id == null) {
+            return null;
+        }
+        ScheduledBuild build = ScheduledBuildStore.get().getById(id);
+        return build != null && build.getJobFullName().equals(getOwner().getFullName()) ? build : null;
+    }
+
+    private static boolean isInPast(long dueTime) {
+        return dueTime + TimeUnit.SECONDS.toMillis(SECURITY_MARGIN) < System.currentTimeMillis();
+    }
+
+    private void schedule(long dueTime, List<ParameterValue> parameters, @CheckForNull Recurrence recurrence) {
+        User user = User.current();
+        String userId = user == null ? null : user.getId();
+        long leveled = LoadLeveling.apply(getOwner(), dueTime);
+        ScheduledBuild build = recurrence == null
+                ? new ScheduledBuild(getOwner().getFullName(), leveled, userId, parameters)
+                : new ScheduledBuild(getOwner().getFullName(), userId, parameters, recurrence.withStart(leveled));
+        ScheduledBuildStore.get().schedule(build);
+    }
+
+    /**
+     * Parses the repeat fields of the schedule form.
+     * @param start due time of the first occurrence in milliseconds since the epoch
+     * @param repeat name of a {@link RecurrenceUnit}, empty for a one-shot build
+     * @param interval number of units between occurrences, empty for 1
+     * @param until build time of the last occurrence in the same format as the due time, empty for no end date
+     * @param count maximum number of occurrences, empty for no limit
+     * @return the recurrence, or {@code null} for a one-shot build
+     * @throws IllegalArgumentException if a field is not valid
+     * @throws DateTimeParseException if the end date is not a valid build time
+     */
+    @CheckForNull
+    static Recurrence parseRecurrence(long start, String repeat, String interval, String until, String count) {
+        if (Util.fixEmptyAndTrim(repeat) == null) {
+            return null;
+        }
+        ZoneId zone = ScheduleBuildGlobalConfiguration.get().getZoneId();
+        String every = Util.fixEmptyAndTrim(interval);
+        String end = Util.fixEmptyAndTrim(until);
+        String times = Util.fixEmptyAndTrim(count);
+        long last = Recurrence.FOREVER;
+        if (end != null) {
+            last = ScheduleTimeParser.parseDateTime(end).atZone(zone).toInstant().toEpochMilli();
+        }
+        return new Recurrence(
+                RecurrenceUnit.valueOf(repeat.trim()),
+                every == null ? 1 : Integer.parseInt(every),
+                start,
+                zone,
+                last,
+                times == null ? 0 : Integer.parseInt(times));
+    }
+
+    private static boolean isMultipart(@CheckForNull StaplerRequest2 req) {
+        return req != null && Util.fixNull(req.getContentType()).startsWith("multipart/");
+    }
+
+    /**
+     * Creates the parameter values submitted by the job's parameter definitions, using the default value for
+     * every parameter that was not submitted.
+     * @throws IllegalArgumentException if a submitted parameter is not defined or has no value
+     */
+    private List<ParameterValue> parameterValues(StaplerRequest2 req, JSONObject formData) {
+        List<ParameterValue> values = new ArrayList<>();
+        Set<String> submitted = new HashSet<>();
+        Object parameters = formData.get("parameter");
+        if (parameters != null) {
+            for (Object o : JSONArray.fromObject(parameters)) {
+                JSONObject jo = (JSONObject) o;
+                String name = jo.getString("name");
+                ParameterDefinition definition = getParameterDefinition(name);
+                if (definition == null) {
+                    throw new IllegalArgumentException("No such parameter definition: " + name);
+                }
+                ParameterValue value = definition.createValue(req, jo);
+                if (value == null) {
+                    throw new IllegalArgumentException("Cannot create a value for parameter " + name);
+                }
+                values.add(value);
+                submitted.add(name);
             }
         }
-        throw exception;
+        for (ParameterDefinition definition : getParameterDefinitions()) {
+            if (!submitted.contains(definition.getName())) {
+                ParameterValue value = definition.getDefaultParameterValue();
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+        return values;
+    }
+
+    private ParameterDefinition getParameterDefinition(String name) {
+        ParametersDefinitionProperty property = getOwner().getProperty(ParametersDefinitionProperty.class);
+        return property == null ? null : property.getParameterDefinition(name);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public RecurrenceUnit[] getRecurrenceUnits() {
+        return RecurrenceUnit.values();
+    }
+
+    /**
+     * @return the first pending builds of the job, ordered by due time
+     */
+    @Restricted(NoExternalUse.class)
+    public List<ScheduledBuild> getPendingBuilds() {
+        ScheduledBuildQuery query =
+                new ScheduledBuildQuery(getOwner().getFullName(), null, null, Long.MIN_VALUE, Long.MAX_VALUE, null);
+        return ScheduledBuildStore.get().find(query, ScheduledBuildQuery.DEFAULT_LIMIT);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public boolean isCancelable() {
+        return getOwner().hasPermission(Item.CANCEL);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public String formatTime(long time) {
+        return ScheduleBuildGlobalConfiguration.get().formatDateTime(time);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public List<ParameterDefinition> getParameterDefinitions() {
+        ParametersDefinitionProperty property = getOwner().getProperty(ParametersDefinitionProperty.class);
+        return property == null ? Collections.emptyList() : property.getParameterDefinitions();
     }
 
     public boolean isJobParameterized() {
-        ParametersDefinitionProperty paramDefinitions = target.getProperty(ParametersDefinitionProperty.class);
+        ParametersDefinitionProperty paramDefinitions = getOwner().getProperty(ParametersDefinitionProperty.class);
         return paramDefinitions != null
                 && paramDefinitions.getParameterDefinitions() != null
                 && paramDefinitions.getParameterDefinitions().size() > 0;
@@ -0,0 +1,556 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.RootAction;
+import hudson.model.SimpleParameterDefinition;
+import hudson.model.User;
+import hudson.security.Permission;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.POST;
+
+/**
+ * Root level REST API to schedule many builds with a single request.
+ * <p>
+ * {@code POST /schedule-build/bulk} accepts a JSON array of
+ * {@code {"job": "folder/job", "time": "2024-01-31T22:00:00+01:00", "parameters": {"NAME": "value"}}} objects.
+ * Times without an offset are interpreted in the time zone configured in {@link ScheduleBuildGlobalConfiguration}.
+ * All accepted builds are added to the {@link ScheduledBuildStore} in one batch, and the response holds one
+ * result per submitted item, in submission order. An item merged into a pending build for the same job and
+ * parameters has the status {@code coalesced} and the id and time of that build.
+ * <p>
+ * {@code POST /schedule-build/reschedule} accepts a JSON array of {@code {"id": "...", "time": "..."}} objects and
+ * moves pending builds to new times, keeping their parameters and requesting user. {@code POST /schedule-build/cancel}
+ * accepts a JSON array of ids and removes the pending builds. Both update the store in one batch and respond with one
+ * result per submitted item, in submission order. Requests with more than {@value #MAX_ITEMS} items are rejected.
+ * <p>
+ * {@code GET /schedule-build/pending} lists pending builds ordered by due time, filtered as described in
+ * {@link ScheduledBuildQuery}. With a {@code limit} parameter a single page is returned, together with the
+ * {@code next} cursor if more builds match, otherwise all matching builds are streamed.
+ * <p>
+ * {@code GET /schedule-build/metrics} returns the latency histograms of {@link ScheduledBuildMetrics}.
+ */
+@Extension
+public class ScheduleBuildApi implements RootAction {
+
+    /**
+     * Maximum number of items in one bulk, reschedule or cancel request.
+     */
+    static final int MAX_ITEMS = 10_000;
+
+    /**
+     * Maximum length of the body of a bulk, reschedule or cancel request, ample for {@link #MAX_ITEMS} items.
+     */
+    static final int MAX_BODY_LENGTH = 4 * 1024 * 1024;
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "schedule-build";
+    }
+
+    @POST
+    public void doBulk(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        JSONArray items = readItems(req, rsp, "Expected a JSON array of scheduled builds");
+        if (items != null) {
+            writeResults(rsp, scheduleAll(items, System.currentTimeMillis()));
+        }
+    }
+
+    @POST
+    public void doReschedule(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        JSONArray items = readItems(req, rsp, "Expected a JSON array of ids and times");
+        if (items != null) {
+            writeResults(rsp, rescheduleAll(items, System.currentTimeMillis()));
+        }
+    }
+
+    @POST
+    public void doCancel(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        JSONArray items = readItems(req, rsp, "Expected a JSON array of ids");
+        if (items != null) {
+            writeResults(rsp, cancelAll(items));
+        }
+    }
+
+    /**
+     * Reads the submitted JSON array, rejecting bodies longer than {@link #MAX_BODY_LENGTH} and arrays of more than
+     * {@link #MAX_ITEMS} items before any of them is validated.
+     */
+    @CheckForNull
+    private static JSONArray readItems(StaplerRequest2 req, StaplerResponse2 rsp, String error) throws IOException {
+        String body = req.getContentLengthLong() > MAX_BODY_LENGTH ? null : readBody(req.getReader());
+        if (body == null) {
+            rsp.sendError(
+                    HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Request body is longer than " + MAX_BODY_LENGTH + " bytes");
+            return null;
+        }
+        JSONArray items;
+        try {
+            items = JSONArray.fromObject(body);
+        } catch (JSONException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, error);
+            return null;
+        }
+        if (items.size() > MAX_ITEMS) {
+            rsp.sendError(
+                    HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "At most " + MAX_ITEMS + " items can be submitted in one request");
+            return null;
+        }
+        return items;
+    }
+
+    /**
+     * @return the request body, or {@code null} if it has more than {@link #MAX_BODY_LENGTH} characters
+     */
+    @CheckForNull
+    private static String readBody(Reader reader) throws IOException {
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            if (body.length() + read > MAX_BODY_LENGTH) {
+                return null;
+            }
+            body.append(buffer, 0, read);
+        }
+        return body.toString();
+    }
+
+    private static void writeResults(StaplerResponse2 rsp, JSONArray results) throws IOException {
+        rsp.setContentType("application/json;charset=UTF-8");
+        new JSONObject().element("results", results).write(rsp.getWriter());
+    }
+
+    /**
+     * Writes pending builds as JSON, reading them from the store one page at a time.
+     */
+    public void doPending(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        Jenkins.get().checkAnyPermission(Jenkins.ADMINISTER, Jenkins.SYSTEM_READ);
+        ScheduledBuildQuery query;
+        int limit;
+        try {
+            query = ScheduledBuildQuery.fromRequest(req);
+            limit = req.getParameter("limit") == null ? Integer.MAX_VALUE : ScheduledBuildQuery.limit(req);
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        ZoneId zone = ScheduleBuildGlobalConfiguration.get().getZoneId();
+        ScheduledBuildStore store = ScheduledBuildStore.get();
+        rsp.setContentType("application/json;charset=UTF-8");
+        Writer out = rsp.getWriter();
+        out.write("{\"builds\":[");
+        int remaining = limit;
+        ScheduledBuild last = null;
+        boolean more = false;
+        while (remaining > 0) {
+            int size = Math.min(remaining, ScheduledBuildQuery.MAX_LIMIT);
+            // The last page of a limited listing fetches one more build, to tell whether there is a next page
+            boolean lastPage = size == remaining && limit != Integer.MAX_VALUE;
+            List<ScheduledBuild> page = store.find(query, lastPage ? size + 1 : size);
+            if (page.size() > size) {
+                more = true;
+                page = page.subList(0, size);
+            }
+            for (ScheduledBuild build : page) {
+                if (last != null) {
+                    out.write(',');
+                }
+                toJSON(build, zone).write(out);
+                last = build;
+            }
+            if (page.size() < size) {
+                break;
+            }
+            remaining -= page.size();
+            query = query.after(last);
+        }
+        out.write(']');
+        if (more) {
+            out.write(",\"next\":");
+            out.write(JSONUtils.quote(ScheduledBuildQuery.cursor(last)));
+        }
+        out.write('}');
+    }
+
+    /**
+     * @return a pending build as it is listed by {@link #doPending(StaplerRequest2, StaplerResponse2)}
+     */
+    @NonNull
+    static JSONObject toJSON(@NonNull ScheduledBuild build, @NonNull ZoneId zone) {
+        JSONArray parameters = new JSONArray();
+        for (ParameterValue value : build.getParameters()) {
+            parameters.add(value.getName());
+        }
+        String time =
+                Instant.ofEpochMilli(build.getDueTime()).atZone(zone).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        JSONObject json = new JSONObject()
+                .element("id", build.getId())
+                .element("job", build.getJobFullName())
+                .element("time", time)
+                .element("user", build.getUserId() == null ? JSONNull.getInstance() : build.getUserId())
+                .element("parameters", parameters);
+        Recurrence recurrence = build.getRecurrence();
+        if (recurrence != null) {
+            json.element("recurrence", recurrence.getDescription());
+        }
+        if (!build.getCoalescedUserIds().isEmpty()) {
+            JSONArray coalesced = new JSONArray();
+            for (String userId : build.getCoalescedUserIds()) {
+                coalesced.add(userId == null ? JSONNull.getInstance() : userId);
+            }
+            json.element("coalesced", coalesced);
+        }
+        return json;
+    }
+
+    /**
+     * Serves {@link ScheduledBuildMetrics} as JSON.
+     */
+    public void doMetrics(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        Jenkins.get().checkAnyPermission(Jenkins.ADMINISTER, Jenkins.SYSTEM_READ);
+        rsp.setContentType("application/json;charset=UTF-8");
+        ScheduledBuildMetrics.get().toJSON().write(rsp.getWriter());
+    }
+
+    /**
+     * Validates every item, then schedules all valid ones in a single batch.
+     * @param items the submitted items
+     * @param now the current time in milliseconds since the epoch
+     * @return one result object per item
+     */
+    @NonNull
+    JSONArray scheduleAll(@NonNull JSONArray items, long now) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        ZoneId zone = config.getZoneId();
+        String userId = currentUserId();
+        Map<String, Job<?, ?>> jobs = new HashMap<>();
+        Map<Job<?, ?>, Boolean> buildable = new HashMap<>();
+        List<ScheduledBuild> accepted = new ArrayList<>(items.size());
+        List<JSONObject> acceptedResults = new ArrayList<>(items.size());
+        Map<LoadLeveling.Slot, Integer> batch = new HashMap<>();
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject result = new JSONObject().element("index", i);
+            results.add(result);
+            Object element = items.get(i);
+            if (!(element instanceof JSONObject)) {
+                fail(result, Messages.ScheduleBuildApi_InvalidItem());
+                continue;
+            }
+            JSONObject item = (JSONObject) element;
+            String name = item.optString("job", "");
+            result.element("job", name);
+            Job<?, ?> job = jobs.computeIfAbsent(name, n -> Jenkins.get().getItemByFullName(n, Job.class));
+            if (job == null) {
+                fail(result, Messages.ScheduleBuildApi_JobNotFound(name));
+                continue;
+            }
+            if (!buildable.computeIfAbsent(job, j -> j.isBuildable() && j.hasPermission(Item.BUILD))) {
+                fail(result, Messages.ScheduleBuildApi_NotBuildable(name));
+                continue;
+            }
+            ZonedDateTime due;
+            try {
+                due = parseTime(item.optString("time", ""), zone);
+            } catch (DateTimeParseException e) {
+                fail(result, Messages.ScheduleBuildAction_ParsingError());
+                continue;
+            }
+            long requested = due.toInstant().toEpochMilli();
+            if (requested + TimeUnit.SECONDS.toMillis(ScheduleBuildAction.SECURITY_MARGIN) < now) {
+                fail(result, Messages.ScheduleBuildAction_DateInPastError());
+                continue;
+            }
+            long dueTime;
+            try {
+                dueTime = config.applyBlackoutPolicy(requested);
+            } catch (IllegalArgumentException e) {
+                fail(result, e.getMessage());
+                continue;
+            }
+            if (dueTime != requested) {
+                due = due.plus(dueTime - requested, ChronoUnit.MILLIS);
+            }
+            List<ParameterValue> parameters;
+            try {
+                parameters = parameters(job, item.optJSONObject("parameters"));
+            } catch (IllegalArgumentException e) {
+                fail(result, e.getMessage() == null ? Messages.ScheduleBuildApi_InvalidItem() : e.getMessage());
+                continue;
+            }
+            long leveled = LoadLeveling.apply(job, dueTime, batch);
+            if (leveled != dueTime) {
+                due = due.plus(leveled - dueTime, ChronoUnit.MILLIS);
+            }
+            ScheduledBuild build = new ScheduledBuild(job.getFullName(), leveled, userId, parameters);
+            accepted.add(build);
+            acceptedResults.add(result);
+            result.element("status", "scheduled")
+                    .element("id", build.getId())
+                    .element("time", due.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        }
+        if (!accepted.isEmpty()) {
+            List<ScheduledBuild> scheduled = ScheduledBuildStore.get().scheduleAll(accepted);
+            for (int i = 0; i < scheduled.size(); i++) {
+                ScheduledBuild build = scheduled.get(i);
+                if (!build.getId().equals(accepted.get(i).getId())) {
+                    String time = Instant.ofEpochMilli(build.getDueTime())
+                            .atZone(zone)
+                            .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+                    JSONObject result = acceptedResults.get(i);
+                    result.element("status", "coalesced").element("id", build.getId()).element("time", time);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates every item, then moves the accepted builds in a single batch.
+     * @param items the submitted items
+     * @param now the current time in milliseconds since the epoch
+     * @return one result object per item
+     */
+    @NonNull
+    JSONArray rescheduleAll(@NonNull JSONArray items, long now) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        ZoneId zone = config.getZoneId();
+        ScheduledBuildStore store = ScheduledBuildStore.get();
+        Map<String, Boolean> permitted = new HashMap<>();
+        Map<String, Long> dueTimes = new LinkedHashMap<>();
+        Map<String, JSONObject> pending = new HashMap<>();
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject result = new JSONObject().element("index", i);
+            results.add(result);
+            Object element = items.get(i);
+            if (!(element instanceof JSONObject)) {
+                fail(result, Messages.ScheduleBuildApi_InvalidItem());
+                continue;
+            }
+            JSONObject item = (JSONObject) element;
+            String id = item.optString("id", "");
+            result.element("id", id);
+            ScheduledBuild build = store.getById(id);
+            if (build == null
+                    || !permitted.computeIfAbsent(build.getJobFullName(), n -> hasPermission(n, Item.BUILD))) {
+                // Builds of jobs the user may not build are reported like missing ones
+                fail(result, Messages.ScheduleBuildApi_BuildNotFound(id));
+                continue;
+            }
+            ZonedDateTime due;
+            try {
+                due = parseTime(item.optString("time", ""), zone);
+            } catch (DateTimeParseException e) {
+                fail(result, Messages.ScheduleBuildAction_ParsingError());
+                continue;
+            }
+            long requested = due.toInstant().toEpochMilli();
+            if (requested + TimeUnit.SECONDS.toMillis(ScheduleBuildAction.SECURITY_MARGIN) < now) {
+                fail(result, Messages.ScheduleBuildAction_DateInPastError());
+                continue;
+            }
+            long dueTime;
+            try {
+                dueTime = config.applyBlackoutPolicy(requested);
+            } catch (IllegalArgumentException e) {
+                fail(result, e.getMessage());
+                continue;
+            }
+            if (dueTime != requested) {
+                due = due.plus(dueTime - requested, ChronoUnit.MILLIS);
+            }
+            // A later item for the same id wins, like it would if the items were sent one by one
+            JSONObject previous = pending.put(id, result);
+            if (previous != null) {
+                fail(previous, Messages.ScheduleBuildApi_Superseded(id));
+            }
+            dueTimes.put(id, dueTime);
+            result.element("job", build.getJobFullName())
+                    .element("time", due.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        }
+        Set<String> moved = new HashSet<>();
+        if (!dueTimes.isEmpty()) {
+            for (ScheduledBuild build : store.rescheduleAll(dueTimes)) {
+                moved.add(build.getId());
+            }
+        }
+        for (Map.Entry<String, JSONObject> entry : pending.entrySet()) {
+            if (moved.contains(entry.getKey())) {
+                entry.getValue().element("status", "rescheduled");
+            } else {
+                // Released between validation and the batch
+                fail(entry.getValue(), Messages.ScheduleBuildApi_BuildNotFound(entry.getKey()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates every item, then removes the accepted builds in a single batch.
+     * @param items the submitted ids, or objects with an {@code id}
+     * @return one result object per item
+     */
+    @NonNull
+    JSONArray cancelAll(@NonNull JSONArray items) {
+        ScheduledBuildStore store = ScheduledBuildStore.get();
+        Map<String, Boolean> permitted = new HashMap<>();
+        Map<String, JSONObject> pending = new LinkedHashMap<>();
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject result = new JSONObject().element("index", i);
+            results.add(result);
+            Object element = items.get(i);
+            String id = null;
+            if (element instanceof String) {
+                id = (String) element;
+            } else if (element instanceof JSONObject) {
+                id = ((JSONObject) element).optString("id", null);
+            }
+            if (id == null) {
+                fail(result, Messages.ScheduleBuildApi_InvalidItem());
+                continue;
+            }
+            result.element("id", id);
+            ScheduledBuild build = store.getById(id);
+            if (build == null
+                    || pending.containsKey(id)
+                    || !permitted.computeIfAbsent(build.getJobFullName(), n -> hasPermission(n, Item.CANCEL))) {
+                fail(result, Messages.ScheduleBuildApi_BuildNotFound(id));
+                continue;
+            }
+            result.element("job", build.getJobFullName());
+            pending.put(id, result);
+        }
+        Set<String> cancelled = new HashSet<>();
+        if (!pending.isEmpty()) {
+            for (ScheduledBuild build : store.cancelAll(pending.keySet())) {
+                cancelled.add(build.getId());
+            }
+        }
+        for (Map.Entry<String, JSONObject> entry : pending.entrySet()) {
+            if (cancelled.contains(entry.getKey())) {
+                entry.getValue().element("status", "cancelled");
+            } else {
+                fail(entry.getValue(), Messages.ScheduleBuildApi_BuildNotFound(entry.getKey()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return whether the current user has {@code permission} on the job, without revealing jobs they cannot see
+     */
+    private static boolean hasPermission(String jobFullName, Permission permission) {
+        Job<?, ?> job = Jenkins.get().getItemByFullName(jobFullName, Job.class);
+        return job != null && job.hasPermission(permission);
+    }
+
+    /**
+     * Parses an ISO-8601 date time, falling back to {@code zone} if the text carries no offset.
+     */
+    static ZonedDateTime parseTime(String text, ZoneId zone) {
+        TemporalAccessor parsed =
+                DateTimeFormatter.ISO_DATE_TIME.parseBest(text.trim(), ZonedDateTime::from, LocalDateTime::from);
+        if (parsed instanceof ZonedDateTime) {
+            return (ZonedDateTime) parsed;
+        }
+        return ((LocalDateTime) parsed).atZone(zone);
+    }
+
+    /**
+     * Converts submitted parameter values using the job's parameter definitions, using the default value for
+     * every parameter that was not submitted.
+     * @throws IllegalArgumentException if a parameter is unknown or cannot be created from a string
+     */
+    @NonNull
+    static List<ParameterValue> parameters(@NonNull Job<?, ?> job, @CheckForNull JSONObject submitted) {
+        ParametersDefinitionProperty property = job.getProperty(ParametersDefinitionProperty.class);
+        List<ParameterValue> values = new ArrayList<>();
+        if (property == null) {
+            if (submitted != null && !submitted.isEmpty()) {
+                throw new IllegalArgumentException(Messages.ScheduleBuildApi_NotParameterized(job.getFullName()));
+            }
+            return values;
+        }
+        if (submitted != null) {
+            for (Object key : submitted.keySet()) {
+                if (property.getParameterDefinition((String) key) == null) {
+                    throw new IllegalArgumentException(Messages.ScheduleBuildApi_UnknownParameter(key));
+                }
+            }
+        }
+        for (ParameterDefinition definition : property.getParameterDefinitions()) {
+            String name = definition.getName();
+            ParameterValue value;
+            if (submitted != null && submitted.containsKey(name)) {
+                if (!(definition instanceof SimpleParameterDefinition)) {
+                    throw new IllegalArgumentException(Messages.ScheduleBuildApi_UnsupportedParameter(name));
+                }
+                value = ((SimpleParameterDefinition) definition).createValue(submitted.getString(name));
+            } else {
+                value = definition.getDefaultParameterValue();
+            }
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private static void fail(JSONObject result, String message) {
+        result.element("status", "error").element("message", message);
+    }
+
+    @CheckForNull
+    static String currentUserId() {
+        User user = User.current();
+        return user == null ? null : user.getId();
+    }
+}
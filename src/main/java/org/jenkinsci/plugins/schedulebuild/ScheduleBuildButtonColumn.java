@@ -1,18 +1,65 @@
 package org.jenkinsci.plugins.schedulebuild;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Descriptor;
+import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.TopLevelItem;
+import hudson.security.ACL;
 import hudson.views.ListViewColumn;
 import hudson.views.ListViewColumnDescriptor;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
+import org.springframework.security.core.Authentication;
 
 public class ScheduleBuildButtonColumn extends ListViewColumn {
 
+    private static final String VISIBILITY = ScheduleBuildButtonColumn.class.getName() + ".visibility";
+
+    /**
+     * Whether the schedule button is shown for an item: it is a buildable job the current user may build.
+     * <p>
+     * A view renders this for every row, so the permission check is memoized for the current request by the
+     * identity of the job's {@link ACL}. Jobs sharing an ACL, like all jobs under a global authorization strategy or
+     * the jobs of a folder under strategies that return the folder's ACL for them, are checked once per page.
+     * Strategies that create an ACL per job, like matrix or role based ones, are still checked once per row: they
+     * may grant a job permissions of its own, based on its properties or on its name, so no key coarser than the
+     * job gives a correct answer for them.
+     */
     public boolean isBuildable(TopLevelItem item) {
-        return item instanceof Job;
+        StaplerRequest2 req = Stapler.getCurrentRequest2();
+        if (req == null) {
+            return new Visibility(Jenkins.getAuthentication2()).shows(item);
+        }
+        Visibility visibility = (Visibility) req.getAttribute(VISIBILITY);
+        if (visibility == null) {
+            visibility = new Visibility(Jenkins.getAuthentication2());
+            req.setAttribute(VISIBILITY, visibility);
+        }
+        return visibility.shows(item);
+    }
+
+    /**
+     * Whether the button is shown for the items of one view render, with the build permission memoized by ACL.
+     */
+    static final class Visibility {
+        private final Authentication authentication;
+        private final Map<ACL, Boolean> canBuild = new IdentityHashMap<>();
+
+        Visibility(@NonNull Authentication authentication) {
+            this.authentication = authentication;
+        }
+
+        boolean shows(@NonNull TopLevelItem item) {
+            return item instanceof Job
+                    && ((Job<?, ?>) item).isBuildable()
+                    && canBuild.computeIfAbsent(item.getACL(), acl -> acl.hasPermission2(authentication, Item.BUILD));
+        }
     }
 
     public static final class DescriptorImpl extends ListViewColumnDescriptor {
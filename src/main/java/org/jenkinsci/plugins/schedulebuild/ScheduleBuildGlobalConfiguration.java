@@ -1,28 +1,33 @@
 package org.jenkinsci.plugins.schedulebuild;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.BulkChange;
 import hudson.Extension;
+import hudson.XmlFile;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.TimeZone;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.*;
 import org.kohsuke.stapler.interceptor.RequirePOST;
@@ -32,6 +37,8 @@ import org.kohsuke.stapler.verb.POST;
 @Symbol("scheduleBuild")
 public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
 
+    private static final Logger LOGGER = Logger.getLogger(ScheduleBuildGlobalConfiguration.class.getName());
+
     public static ScheduleBuildGlobalConfiguration get() {
         final ScheduleBuildGlobalConfiguration configuration =
                 GlobalConfiguration.all().get(ScheduleBuildGlobalConfiguration.class);
@@ -49,33 +56,145 @@ public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
 
     private String defaultStartTime;
 
-    private transient LocalTime defaultScheduleLocalTime;
+    /**
+     * Values derived from {@link #timeZone} and {@link #defaultStartTime}, replaced whenever one of them changes.
+     */
+    private transient volatile Settings settings;
 
-    private static final Logger LOGGER = Logger.getLogger(ScheduleBuildGlobalConfiguration.class.getName());
+    /**
+     * Whether a value changed within a {@link BulkChange}, or was migrated by {@link #load()}, since the configuration
+     * was last written. Guarded by {@code this}.
+     */
+    private transient boolean dirty;
+
+    /**
+     * Number of seconds before their due time at which scheduled builds are handed to the queue.
+     */
+    private long releaseLeadTime;
+
+    private CatchUpPolicy catchUpPolicy;
+
+    private LevelingMode levelingMode;
+
+    /**
+     * Number of seconds by which leveling may move a scheduled build.
+     */
+    private long levelingWindow;
+
+    /**
+     * Number of seconds within which schedules of the same job with equal parameters are merged, 0 to never merge.
+     */
+    private long coalescingWindow;
+
+    /**
+     * Number of seconds ahead of their due time at which scheduled builds count as demand for cloud agents, 0 to
+     * never provision ahead.
+     */
+    private long provisioningLookahead;
+
+    /**
+     * Rates at which due builds are handed to the queue, per label expression.
+     */
+    private List<LabelRateLimit> releaseRateLimits;
+
+    /**
+     * Periods in which no scheduled build may start.
+     */
+    private List<BlackoutWindow> blackoutWindows;
+
+    private BlackoutPolicy blackoutPolicy;
+
+    /**
+     * Occurrences of {@link #blackoutWindows} around recent lookups, replaced when a lookup falls outside of it.
+     */
+    private transient volatile BlackoutCalendar blackoutCalendar;
+
+    /**
+     * Number of journal records after which the journal is compacted into a snapshot.
+     */
+    private int journalCompactionThreshold;
 
     private static final String TIME_PATTERN = "HH:mm:ss";
 
-    private static final DateTimeFormatter[] FORMATTERS = {
-        DateTimeFormatter.ofPattern("H:m[:s]"), DateTimeFormatter.ofPattern("h:m[:s] a", Locale.ROOT),
-    };
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern(TIME_PATTERN);
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    static final long DEFAULT_RELEASE_LEAD_TIME = 300;
+
+    static final int DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 10000;
+
+    static final long DEFAULT_LEVELING_WINDOW = 3600;
 
     @DataBoundConstructor
     public ScheduleBuildGlobalConfiguration() {
         this.timeZone = TimeZone.getDefault().getID();
         defaultStartTime = "22:00:00";
+        releaseLeadTime = DEFAULT_RELEASE_LEAD_TIME;
+        catchUpPolicy = CatchUpPolicy.FIRE;
+        journalCompactionThreshold = DEFAULT_JOURNAL_COMPACTION_THRESHOLD;
+        levelingMode = LevelingMode.OFF;
+        levelingWindow = DEFAULT_LEVELING_WINDOW;
         load();
-        defaultScheduleLocalTime = LocalTime.parse(defaultStartTime, getTimeFormatter());
     }
 
     @Override
     @SuppressFBWarnings(value = "UWF_UNWRITTEN_FIELD", justification = "Written by xstream")
-    public void load() {
+    public synchronized void load() {
         super.load();
         if (defaultScheduleTime != null) {
             SimpleDateFormat sdf = new SimpleDateFormat(TIME_PATTERN);
             sdf.setTimeZone(TimeZone.getTimeZone("UTC")); // xstream serializes with UTC
-            setDefaultStartTime(sdf.format(this.defaultScheduleTime));
+            // Written together with the next change instead of while loading
+            defaultStartTime = sdf.format(this.defaultScheduleTime);
+            dirty = true;
+        }
+        publish();
+    }
+
+    /**
+     * Applies the submitted form as a single change, so the configuration is written at most once, and not at all if
+     * the form did not change anything.
+     */
+    @Override
+    public synchronized boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        try (BulkChange bc = new BulkChange(this)) {
+            req.bindJSON(this, json);
+            if (!json.has("releaseRateLimits")) {
+                // A repeatable property without entries is left out of the form
+                setReleaseRateLimits(Collections.emptyList());
+            }
+            if (!json.has("blackoutWindows")) {
+                setBlackoutWindows(Collections.emptyList());
+            }
+            if (dirty) {
+                bc.commit();
+                dirty = false;
+            }
+        } catch (IOException e) {
+            throw new FormException(e.getMessage(), e, null);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the configuration unless the file already holds exactly these values. Configuration as code commits
+     * its own {@link BulkChange}, so applying the same configuration again must not write.
+     */
+    @Override
+    public synchronized void save() {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        XmlFile file = getConfigFile();
+        try {
+            if (file.exists() && file.asString().trim().endsWith(file.getXStream().toXML(this).trim())) {
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e, () -> "Failed to read " + file + ", writing it again");
         }
+        super.save();
     }
 
     public String getDefaultScheduleTime() {
@@ -88,9 +207,12 @@ public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
 
     @DataBoundSetter
     public void setDefaultStartTime(String defaultStartTime) {
-        defaultScheduleLocalTime = parseTime(defaultStartTime);
-        this.defaultStartTime = defaultScheduleLocalTime.format(getTimeFormatter());
-        save();
+        String normalized = ScheduleTimeParser.parseTime(defaultStartTime).format(TIME_FORMATTER);
+        if (!normalized.equals(this.defaultStartTime)) {
+            this.defaultStartTime = normalized;
+            publish();
+            changed();
+        }
     }
 
     @DataBoundSetter
@@ -98,43 +220,204 @@ public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
         setDefaultStartTime(defaultScheduleTime);
     }
 
-    private LocalTime parseTime(String time) {
-        /* Try each of the formatters with the user provided data, return first success */
-        /* Java 21 changed DateFormat to not accept strings with only a time component */
-        /* DateTimeFormatter parsing allows Java 11, 17, and 21 to accept several time string formats */
-        DateTimeParseException exception = null;
-        final String ftime = time.trim();
-        for (DateTimeFormatter formatter : FORMATTERS) {
-            try {
-                return LocalTime.parse(ftime.toUpperCase(Locale.ROOT), formatter);
-            } catch (DateTimeParseException dtex) {
-                exception = dtex;
-                LOGGER.log(Level.FINE, dtex, () -> "Did not parse '" + ftime + "' with formatter " + formatter);
-            }
-        }
-        throw exception;
-    }
-
     public String getTimeZone() {
         return timeZone;
     }
 
     @DataBoundSetter
     public void setTimeZone(String timeZone) {
-        this.timeZone = timeZone;
-        save();
+        if (!Objects.equals(timeZone, this.timeZone)) {
+            this.timeZone = timeZone;
+            publish();
+            changed();
+        }
     }
 
-    public ZoneId getZoneId() {
-        try {
-            return ZoneId.of(timeZone);
-        } catch (DateTimeException dte) {
-            return ZoneId.systemDefault();
+    public long getReleaseLeadTime() {
+        return releaseLeadTime;
+    }
+
+    @DataBoundSetter
+    public void setReleaseLeadTime(long releaseLeadTime) {
+        long clamped = Math.max(0, releaseLeadTime);
+        if (clamped != this.releaseLeadTime) {
+            this.releaseLeadTime = clamped;
+            changed();
+        }
+    }
+
+    public CatchUpPolicy getCatchUpPolicy() {
+        return catchUpPolicy == null ? CatchUpPolicy.FIRE : catchUpPolicy;
+    }
+
+    @DataBoundSetter
+    public void setCatchUpPolicy(CatchUpPolicy catchUpPolicy) {
+        if (catchUpPolicy != this.catchUpPolicy) {
+            this.catchUpPolicy = catchUpPolicy;
+            changed();
+        }
+    }
+
+    public LevelingMode getLevelingMode() {
+        return levelingMode == null ? LevelingMode.OFF : levelingMode;
+    }
+
+    @DataBoundSetter
+    public void setLevelingMode(LevelingMode levelingMode) {
+        if (levelingMode != this.levelingMode) {
+            this.levelingMode = levelingMode;
+            changed();
         }
     }
 
-    private DateTimeFormatter getTimeFormatter() {
-        return DateTimeFormatter.ofPattern(TIME_PATTERN);
+    public long getLevelingWindow() {
+        return levelingWindow;
+    }
+
+    @DataBoundSetter
+    public void setLevelingWindow(long levelingWindow) {
+        long clamped = Math.max(0, levelingWindow);
+        if (clamped != this.levelingWindow) {
+            this.levelingWindow = clamped;
+            changed();
+        }
+    }
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    @DataBoundSetter
+    public void setCoalescingWindow(long coalescingWindow) {
+        long clamped = Math.max(0, coalescingWindow);
+        if (clamped != this.coalescingWindow) {
+            this.coalescingWindow = clamped;
+            changed();
+        }
+    }
+
+    public long getProvisioningLookahead() {
+        return provisioningLookahead;
+    }
+
+    @DataBoundSetter
+    public void setProvisioningLookahead(long provisioningLookahead) {
+        long clamped = Math.max(0, provisioningLookahead);
+        if (clamped != this.provisioningLookahead) {
+            this.provisioningLookahead = clamped;
+            changed();
+        }
+    }
+
+    @NonNull
+    public List<LabelRateLimit> getReleaseRateLimits() {
+        return releaseRateLimits == null ? Collections.emptyList() : releaseRateLimits;
+    }
+
+    @DataBoundSetter
+    public void setReleaseRateLimits(List<LabelRateLimit> releaseRateLimits) {
+        // Copied into a list xstream can write, and compared so an unchanged form does not write
+        List<LabelRateLimit> limits =
+                releaseRateLimits == null ? new ArrayList<>() : new ArrayList<>(releaseRateLimits);
+        if (!limits.equals(getReleaseRateLimits())) {
+            this.releaseRateLimits = limits;
+            changed();
+        }
+    }
+
+    @NonNull
+    public List<BlackoutWindow> getBlackoutWindows() {
+        return blackoutWindows == null ? Collections.emptyList() : blackoutWindows;
+    }
+
+    @DataBoundSetter
+    public void setBlackoutWindows(List<BlackoutWindow> blackoutWindows) {
+        List<BlackoutWindow> windows = blackoutWindows == null ? new ArrayList<>() : new ArrayList<>(blackoutWindows);
+        if (!windows.equals(getBlackoutWindows())) {
+            this.blackoutWindows = windows;
+            changed();
+        }
+    }
+
+    public BlackoutPolicy getBlackoutPolicy() {
+        return blackoutPolicy == null ? BlackoutPolicy.REJECT : blackoutPolicy;
+    }
+
+    @DataBoundSetter
+    public void setBlackoutPolicy(BlackoutPolicy blackoutPolicy) {
+        if (blackoutPolicy != this.blackoutPolicy) {
+            this.blackoutPolicy = blackoutPolicy;
+            changed();
+        }
+    }
+
+    /**
+     * Looks up the blackout window a build time falls in.
+     * @param time a build time in milliseconds since the epoch
+     * @return the end of the blackout window containing the time, or the time itself if it is in none. Windows
+     *     that overlap or follow each other directly count as one.
+     */
+    public long getBlackoutEnd(long time) {
+        List<BlackoutWindow> windows = getBlackoutWindows();
+        if (windows.isEmpty()) {
+            return time;
+        }
+        ZoneId zone = getZoneId();
+        BlackoutCalendar calendar = blackoutCalendar;
+        if (calendar == null || !calendar.isFor(windows, zone) || !calendar.covers(time)) {
+            long now = System.currentTimeMillis();
+            // Most build times are in the coming days, a calendar starting now answers for all of them
+            long from = time >= now && time < now + BlackoutCalendar.HORIZON ? now : time;
+            calendar = BlackoutCalendar.build(windows, zone, from, from + BlackoutCalendar.HORIZON);
+            blackoutCalendar = calendar;
+        }
+        long end = calendar.endOf(time);
+        // Windows repeating at least as often as they last never end, give up on them after about a year
+        for (int i = 0; end >= calendar.getTo() && i < 12; i++) {
+            // The window lasts past the calendar, and may be followed directly by another one
+            calendar = BlackoutCalendar.build(windows, zone, end, end + BlackoutCalendar.HORIZON);
+            end = calendar.endOf(end);
+        }
+        return end;
+    }
+
+    /**
+     * Applies the {@link #getBlackoutPolicy() blackout policy} to a requested build time.
+     * @param time a build time in milliseconds since the epoch
+     * @return the time, or the end of the blackout window containing it if builds are moved out of windows
+     * @throws IllegalArgumentException if the time is in a blackout window and such build times are rejected
+     */
+    public long applyBlackoutPolicy(long time) {
+        long end = getBlackoutEnd(time);
+        if (end != time && getBlackoutPolicy() == BlackoutPolicy.REJECT) {
+            throw new IllegalArgumentException(Messages.BlackoutPolicy_Rejected(formatDateTime(end)));
+        }
+        return end;
+    }
+
+    /**
+     * @return the time in the configured time zone, in the format of the schedule page
+     */
+    @NonNull
+    String formatDateTime(long time) {
+        return Instant.ofEpochMilli(time).atZone(getZoneId()).format(DATE_TIME_FORMATTER);
+    }
+
+    public int getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
+
+    @DataBoundSetter
+    public void setJournalCompactionThreshold(int journalCompactionThreshold) {
+        int clamped = Math.max(1, journalCompactionThreshold);
+        if (clamped != this.journalCompactionThreshold) {
+            this.journalCompactionThreshold = clamped;
+            changed();
+        }
+    }
+
+    public ZoneId getZoneId() {
+        return settings.zoneId;
     }
 
     /**
@@ -142,16 +425,15 @@ public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
      * @return scheduletime
      */
     public ZonedDateTime getDefaultScheduleTimeObject() {
-        ZonedDateTime zdt = defaultScheduleLocalTime.atDate(LocalDate.now()).atZone(getZoneId());
+        Settings current = settings;
+        ZonedDateTime zdt = current.defaultStartTime.atDate(LocalDate.now()).atZone(current.zoneId);
         return zdt;
     }
 
     @RequirePOST
     public FormValidation doCheckDefaultStartTime(@QueryParameter String value) {
         Jenkins.get().checkPermission(Jenkins.ADMINISTER); // Admin permission required for global config
-        try {
-            parseTime(value);
-        } catch (DateTimeParseException ex) {
+        if (ScheduleTimeParser.tryParseTime(value) == null) {
             return FormValidation.error(Messages.ScheduleBuildGlobalConfiguration_ParsingError());
         }
         return FormValidation.ok();
@@ -170,20 +452,59 @@ public class ScheduleBuildGlobalConfiguration extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Fills the time zone options from the ones cached by {@link TimeZoneItems}.
+     */
     @POST
     public ListBoxModel doFillTimeZoneItems() {
         Jenkins.get()
                 .checkAnyPermission(
                         Jenkins.ADMINISTER, Jenkins.SYSTEM_READ); // Admin permission required for global config
-        ListBoxModel items = new ListBoxModel();
-        Set<String> zoneIds = new TreeSet<>(ZoneId.getAvailableZoneIds());
-        for (String id : zoneIds) {
-            if (id.equalsIgnoreCase(timeZone)) {
-                items.add(new ListBoxModel.Option(id, id, true));
-            } else {
-                items.add(id);
+        return TimeZoneItems.get().model(timeZone);
+    }
+
+    /**
+     * Called by setters when a value actually changed. Outside of a {@link BulkChange} the configuration is written
+     * right away, inside one it is written when the change is committed.
+     */
+    private synchronized void changed() {
+        if (BulkChange.contains(this)) {
+            dirty = true;
+        } else {
+            save();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Replaces {@link #settings} with values derived from the current fields.
+     */
+    private void publish() {
+        settings = new Settings(timeZone, LocalTime.parse(defaultStartTime, TIME_FORMATTER));
+    }
+
+    /**
+     * Immutable view of the parsed configuration values used on every page render and form validation, so that
+     * readers neither lock nor parse.
+     */
+    private static final class Settings {
+        final ZoneId zoneId;
+        final LocalTime defaultStartTime;
+
+        Settings(String timeZone, LocalTime defaultStartTime) {
+            this.zoneId = resolve(timeZone);
+            this.defaultStartTime = defaultStartTime;
+        }
+
+        private static ZoneId resolve(String timeZone) {
+            if (timeZone != null) {
+                try {
+                    return ZoneId.of(timeZone);
+                } catch (DateTimeException dte) {
+                    // fall through to the system default
+                }
             }
+            return ZoneId.systemDefault();
         }
-        return items;
     }
 }
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import hudson.Extension;
+import hudson.model.AbstractItem;
+import hudson.model.Action;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import java.util.Collection;
+import java.util.Collections;
+import jenkins.model.TransientActionFactory;
+
+/**
+ * Contributes the {@link ScheduleJobsAction} of every folder, meaning every item holding other items that is not
+ * itself a job, without depending on the folders plugin.
+ */
+@Extension
+public final class ScheduleBuildTransientFolderActionFactory extends TransientActionFactory<AbstractItem> {
+
+    @Override
+    public Class<AbstractItem> type() {
+        return AbstractItem.class;
+    }
+
+    @Override
+    public Collection<? extends Action> createFor(AbstractItem target) {
+        if (target instanceof ItemGroup && !(target instanceof Job)) {
+            return Collections.singleton(new ScheduleJobsAction(target));
+        } else {
+            return Collections.emptyList();
+        }
+    }
+}
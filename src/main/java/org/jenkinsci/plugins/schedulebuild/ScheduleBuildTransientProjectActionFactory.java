@@ -6,11 +6,25 @@ import hudson.model.Job;
 import hudson.model.TopLevelItem;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import jenkins.model.TransientActionFactory;
 
+/**
+ * Contributes the {@link ScheduleBuildAction} of every top level job.
+ * <p>
+ * {@link Job#getAllActions()} asks for the actions many times per page, REST API call and list view row, so each
+ * job's action is created once and kept for as long as the job object exists. The cache is keyed weakly by the job
+ * instance, jobs do not override {@code equals}, so a renamed job keeps its action while a job reloaded from disk or
+ * recreated under the same name is a new key with a new action. The action only holds its job weakly, so the cached
+ * value never keeps its own key alive.
+ */
 @Extension
 public final class ScheduleBuildTransientProjectActionFactory extends TransientActionFactory<Job> {
 
+    private final Map<Job<?, ?>, List<ScheduleBuildAction>> actions = Collections.synchronizedMap(new WeakHashMap<>());
+
     @Override
     public Class<Job> type() {
         return Job.class;
@@ -18,10 +32,9 @@ public final class ScheduleBuildTransientProjectActionFactory extends TransientA
 
     @Override
     public Collection<? extends Action> createFor(Job target) {
-        if (target instanceof TopLevelItem) {
-            return Collections.singleton(new ScheduleBuildAction(target));
-        } else {
+        if (!(target instanceof TopLevelItem)) {
             return Collections.emptyList();
         }
+        return actions.computeIfAbsent(target, job -> Collections.singletonList(new ScheduleBuildAction(job)));
     }
 }
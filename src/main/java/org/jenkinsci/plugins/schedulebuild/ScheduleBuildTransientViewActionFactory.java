@@ -0,0 +1,20 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.TransientViewActionFactory;
+import hudson.model.View;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contributes the {@link ScheduleJobsAction} of every view.
+ */
+@Extension
+public final class ScheduleBuildTransientViewActionFactory extends TransientViewActionFactory {
+
+    @Override
+    public List<Action> createFor(View v) {
+        return Collections.singletonList(new ScheduleJobsAction(v));
+    }
+}
@@ -0,0 +1,200 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.model.AbstractItem;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.TopLevelItem;
+import hudson.model.View;
+import hudson.security.AccessControlled;
+import hudson.util.FormValidation;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.jenkins.ui.icon.IconSpec;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Schedules every job of a view, or every job in a folder and its subfolders, for one build time.
+ * <p>
+ * The jobs the current user may build are found with one permission check per distinct {@link hudson.security.ACL},
+ * like the rows of {@link ScheduleBuildButtonColumn}, and all builds are added to the {@link ScheduledBuildStore} in
+ * a single batch. Builds can be staggered by a number of seconds, in job name order, so they do not all hit the
+ * queue and the agents at the same moment.
+ */
+public class ScheduleJobsAction implements Action, IconSpec {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduleJobsAction.class.getName());
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern(ScheduleBuildAction.DATE_TIME_PATTERN);
+
+    /** A {@link View}, or an {@link AbstractItem} that is an {@link ItemGroup}. */
+    private final AccessControlled owner;
+
+    public ScheduleJobsAction(@NonNull View view) {
+        this.owner = view;
+    }
+
+    /**
+     * @param folder an item holding other items, like a folder or a multibranch project
+     * @throws IllegalArgumentException if {@code folder} holds no items
+     */
+    public ScheduleJobsAction(@NonNull AbstractItem folder) {
+        if (!(folder instanceof ItemGroup)) {
+            throw new IllegalArgumentException(folder.getFullName() + " is not a folder");
+        }
+        this.owner = folder;
+    }
+
+    public AccessControlled getOwner() {
+        return owner;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getIconClassName() {
+        return owner.hasPermission(Item.BUILD) ? "symbol-calendar-outline plugin-ionicons-api" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        if (!owner.hasPermission(Item.BUILD)) {
+            return null;
+        }
+        return owner instanceof View
+                ? Messages.ScheduleJobsAction_ViewDisplayName()
+                : Messages.ScheduleJobsAction_FolderDisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "schedule";
+    }
+
+    /**
+     * @return the jobs of the view or folder the current user may build, ordered by full name
+     */
+    @Restricted(NoExternalUse.class)
+    public List<Job<?, ?>> getBuildableJobs() {
+        Collection<? extends Item> items = owner instanceof View
+                ? ((View) owner).getAllItems()
+                : Items.getAllItems((ItemGroup<?>) owner, Job.class);
+        ScheduleBuildButtonColumn.Visibility visibility =
+                new ScheduleBuildButtonColumn.Visibility(Jenkins.getAuthentication2());
+        List<Job<?, ?>> jobs = new ArrayList<>();
+        for (Item item : items) {
+            if (item instanceof TopLevelItem && visibility.shows((TopLevelItem) item)) {
+                jobs.add((Job<?, ?>) item);
+            }
+        }
+        jobs.sort(Comparator.comparing(Job::getFullName));
+        return jobs;
+    }
+
+    @Restricted(NoExternalUse.class)
+    public String getDefaultDate() {
+        ZonedDateTime zdt = ScheduleBuildGlobalConfiguration.get().getDefaultScheduleTimeObject();
+        if (ZonedDateTime.now().isAfter(zdt)) {
+            zdt = zdt.plusDays(1);
+        }
+        return zdt.format(DATE_TIME_FORMATTER);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public String getDateTimeFormatting() {
+        return ScheduleBuildAction.DATE_TIME_PATTERN;
+    }
+
+    @Restricted(NoExternalUse.class)
+    public String getMinDate() {
+        return ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId()).format(DATE_TIME_FORMATTER);
+    }
+
+    @RequirePOST
+    public FormValidation doCheckDate(@QueryParameter String value) {
+        owner.checkPermission(Item.BUILD);
+        return ScheduleBuildAction.checkDate(value);
+    }
+
+    /**
+     * Schedules a build of every job the current user may build, with the default values of its parameters.
+     * @param date build time of the first job
+     * @param stagger seconds between the build times of consecutive jobs, empty for none
+     */
+    @RequirePOST
+    public HttpResponse doNext(@QueryParameter String date, @QueryParameter String stagger) {
+        owner.checkPermission(Item.BUILD);
+        long dueTime;
+        long step;
+        try {
+            dueTime = ScheduleTimeParser.parseDateTime(Util.fixNull(date))
+                    .atZone(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                    .toInstant()
+                    .toEpochMilli();
+            String seconds = Util.fixEmptyAndTrim(stagger);
+            step = seconds == null ? 0 : TimeUnit.SECONDS.toMillis(Integer.parseUnsignedInt(seconds));
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            LOGGER.log(Level.INFO, ex, () -> "Error parsing " + date + " or " + stagger);
+            return HttpResponses.redirectTo("error");
+        }
+        if (dueTime + TimeUnit.SECONDS.toMillis(ScheduleBuildAction.SECURITY_MARGIN) < System.currentTimeMillis()) {
+            LOGGER.log(Level.INFO, () -> "Error security margin " + date);
+            return HttpResponses.redirectTo("error");
+        }
+        try {
+            dueTime = ScheduleBuildGlobalConfiguration.get().applyBlackoutPolicy(dueTime);
+            schedule(getBuildableJobs(), dueTime, step);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.INFO, () -> "Error blackout window " + date + " staggered by " + stagger);
+            return HttpResponses.redirectTo("error");
+        }
+        return HttpResponses.redirectTo("..");
+    }
+
+    /**
+     * Adds one build per job to the store in a single batch.
+     * The blackout policy applies to every staggered build time, before it is leveled.
+     * @param jobs the jobs to schedule
+     * @param dueTime build time of the first job in milliseconds since the epoch
+     * @param step milliseconds between the build times of consecutive jobs
+     * @return the scheduled builds, see {@link ScheduledBuildStore#scheduleAll(Collection)}
+     * @throws IllegalArgumentException if a build time is in a blackout window and such build times are rejected,
+     *     nothing is scheduled then
+     */
+    static List<ScheduledBuild> schedule(@NonNull List<Job<?, ?>> jobs, long dueTime, long step) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        String userId = ScheduleBuildApi.currentUserId();
+        Map<LoadLeveling.Slot, Integer> batch = new HashMap<>();
+        List<ScheduledBuild> builds = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            Job<?, ?> job = jobs.get(i);
+            long leveled = LoadLeveling.apply(job, config.applyBlackoutPolicy(dueTime + i * step), batch);
+            builds.add(new ScheduledBuild(job.getFullName(), leveled, userId, ScheduleBuildApi.parameters(job, null)));
+        }
+        return ScheduledBuildStore.get().scheduleAll(builds);
+    }
+}
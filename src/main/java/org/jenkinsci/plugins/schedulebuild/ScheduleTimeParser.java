@@ -0,0 +1,257 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Single pass parser for the build times users type in.
+ * <p>
+ * Accepts the same forms as the {@code d-M-y H:m[:s]} and {@code d-M-y h:m[:s] a} formatters used before, with
+ * the same smart resolution ({@code 31-04-2024} is the 30th of April and {@code 24:00} is midnight of the next
+ * day), and the time only forms {@code H:m[:s]} and {@code h:m[:s] a}. Unlike trying one
+ * {@link java.time.format.DateTimeFormatter} after the other, parsing never throws while looking for the
+ * matching form: the {@code tryParse} methods return {@code null} and the {@code parse} methods create a single
+ * {@link DateTimeParseException} once the input is known to be invalid.
+ */
+final class ScheduleTimeParser {
+
+    private static final int NO_ERROR = -1;
+
+    private final CharSequence text;
+    private final int end;
+    private int position;
+    private int errorIndex = NO_ERROR;
+
+    /** Set by {@link #time()}. */
+    private LocalTime localTime;
+
+    /** Set by {@link #time()} when the time was {@code 24:00}, which resolves to midnight of the next day. */
+    private boolean endOfDay;
+
+    private ScheduleTimeParser(CharSequence text) {
+        this.text = text;
+        int start = 0;
+        int stop = text.length();
+        while (start < stop && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) {
+            stop--;
+        }
+        this.position = start;
+        this.end = stop;
+    }
+
+    /**
+     * Parses a date and time.
+     * @param text the text to parse, surrounding whitespace is ignored
+     * @return the parsed date and time, or {@code null} if the text is not a valid build time
+     */
+    @CheckForNull
+    static LocalDateTime tryParseDateTime(@NonNull CharSequence text) {
+        return new ScheduleTimeParser(text).dateTime();
+    }
+
+    /**
+     * Parses a date and time.
+     * @param text the text to parse, surrounding whitespace is ignored
+     * @return the parsed date and time
+     * @throws DateTimeParseException if the text is not a valid build time
+     */
+    @NonNull
+    static LocalDateTime parseDateTime(@NonNull CharSequence text) {
+        ScheduleTimeParser parser = new ScheduleTimeParser(text);
+        LocalDateTime dateTime = parser.dateTime();
+        if (dateTime == null) {
+            throw parser.error();
+        }
+        return dateTime;
+    }
+
+    /**
+     * Parses a time of day.
+     * @param text the text to parse, surrounding whitespace is ignored
+     * @return the parsed time, or {@code null} if the text is not a valid time
+     */
+    @CheckForNull
+    static LocalTime tryParseTime(@NonNull CharSequence text) {
+        ScheduleTimeParser parser = new ScheduleTimeParser(text);
+        return parser.time() && parser.atEnd() ? parser.localTime : null;
+    }
+
+    /**
+     * Parses a time of day.
+     * @param text the text to parse, surrounding whitespace is ignored
+     * @return the parsed time
+     * @throws DateTimeParseException if the text is not a valid time
+     */
+    @NonNull
+    static LocalTime parseTime(@NonNull CharSequence text) {
+        ScheduleTimeParser parser = new ScheduleTimeParser(text);
+        if (!parser.time() || !parser.atEnd()) {
+            throw parser.error();
+        }
+        return parser.localTime;
+    }
+
+    @CheckForNull
+    private LocalDateTime dateTime() {
+        int dayIndex = position;
+        int day = number();
+        if (day < 0 || !literal('-')) {
+            return null;
+        }
+        int monthIndex = position;
+        int month = number();
+        if (month < 0 || !literal('-')) {
+            return null;
+        }
+        int yearIndex = position;
+        int year = number();
+        if (year < 0 || !literal(' ') || !time() || !atEnd()) {
+            return null;
+        }
+        if (day < 1 || day > 31) {
+            return fail(dayIndex);
+        }
+        if (month < 1 || month > 12) {
+            return fail(monthIndex);
+        }
+        if (year < 1 || year > Year.MAX_VALUE) {
+            return fail(yearIndex);
+        }
+        // Smart resolution clamps the day to the length of the month
+        int dayOfMonth = Math.min(day, Month.of(month).length(Year.isLeap(year)));
+        LocalDate date = LocalDate.of(year, month, dayOfMonth);
+        if (endOfDay) {
+            if (date.equals(LocalDate.MAX)) {
+                return fail(yearIndex);
+            }
+            date = date.plusDays(1);
+        }
+        return LocalDateTime.of(date, localTime);
+    }
+
+    /**
+     * Parses {@code H:m[:s]} or {@code h:m[:s] a} into {@link #localTime}.
+     * @return whether a valid time was found
+     */
+    private boolean time() {
+        int hourIndex = position;
+        int hour = number();
+        if (hour < 0 || !literal(':')) {
+            return false;
+        }
+        int minuteIndex = position;
+        int minute = number();
+        if (minute < 0) {
+            return false;
+        }
+        int secondIndex = position;
+        int second = 0;
+        if (position < end && text.charAt(position) == ':') {
+            position++;
+            secondIndex = position;
+            second = number();
+            if (second < 0) {
+                return false;
+            }
+        }
+        if (position < end) {
+            // 12 hour clock, the hour is the clock hour of am/pm and 0 is accepted as well
+            if (!literal(' ')) {
+                return false;
+            }
+            char marker = position < end ? Character.toUpperCase(text.charAt(position)) : 0;
+            if ((marker != 'A' && marker != 'P')
+                    || position + 2 != end
+                    || Character.toUpperCase(text.charAt(position + 1)) != 'M') {
+                errorIndex = position;
+                return false;
+            }
+            position = end;
+            if (hour > 12) {
+                return failTime(hourIndex);
+            }
+            hour = (hour % 12) + (marker == 'P' ? 12 : 0);
+        } else if (hour == 24 && minute == 0 && second == 0) {
+            endOfDay = true;
+            hour = 0;
+        } else if (hour > 23) {
+            return failTime(hourIndex);
+        }
+        if (minute > 59) {
+            return failTime(minuteIndex);
+        }
+        if (second > 59) {
+            return failTime(secondIndex);
+        }
+        localTime = LocalTime.of(hour, minute, second);
+        return true;
+    }
+
+    /**
+     * Parses an unsigned decimal number of up to 19 digits, like {@code DateTimeFormatter} does for single letter
+     * patterns. Values that do not fit in an {@code int} are reported as {@link Integer#MAX_VALUE}, which is out
+     * of range for every field.
+     * @return the number, or {@code -1} if there is no digit at the current position
+     */
+    private int number() {
+        int start = position;
+        long value = 0;
+        while (position < end && position - start < 19) {
+            char c = text.charAt(position);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (value <= Integer.MAX_VALUE) {
+                value = value * 10 + (c - '0');
+            }
+            position++;
+        }
+        if (position == start) {
+            errorIndex = start;
+            return -1;
+        }
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    private boolean literal(char c) {
+        if (position < end && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        errorIndex = position;
+        return false;
+    }
+
+    private boolean atEnd() {
+        if (position == end) {
+            return true;
+        }
+        errorIndex = position;
+        return false;
+    }
+
+    private LocalDateTime fail(int index) {
+        errorIndex = index;
+        return null;
+    }
+
+    private boolean failTime(int index) {
+        errorIndex = index;
+        return false;
+    }
+
+    private DateTimeParseException error() {
+        int index = errorIndex == NO_ERROR ? position : errorIndex;
+        return new DateTimeParseException(
+                "Text '" + text + "' could not be parsed at index " + index, text, index);
+    }
+}
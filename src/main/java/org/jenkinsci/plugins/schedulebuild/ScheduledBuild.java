@@ -0,0 +1,211 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.ParameterValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A build that has been scheduled for a future point in time but has not yet been handed to the
+ * {@link hudson.model.Queue}.
+ * <p>
+ * A recurring build stands for the next occurrence of its {@link Recurrence}. Once it is released, {@link #next(long)}
+ * creates the following occurrence, which keeps the id.
+ * <p>
+ * When schedules are coalesced, a one-shot build also stands for the later requests for the same job and parameters
+ * that were merged into it, whose users are listed by {@link #getCoalescedUserIds()}.
+ */
+public final class ScheduledBuild {
+
+    /**
+     * Orders scheduled builds by due time, breaking ties by id.
+     */
+    static final Comparator<ScheduledBuild> BY_DUE_TIME =
+            Comparator.comparingLong(ScheduledBuild::getDueTime).thenComparing(ScheduledBuild::getId);
+
+    private final String id;
+    private final String jobFullName;
+    private final long dueTime;
+
+    @CheckForNull
+    private final String userId;
+
+    private final List<ParameterValue> parameters;
+
+    @CheckForNull
+    private final Recurrence recurrence;
+
+    private final int occurrence;
+
+    private final List<String> coalescedUserIds;
+
+    public ScheduledBuild(
+            @NonNull String jobFullName,
+            long dueTime,
+            @CheckForNull String userId,
+            @NonNull List<ParameterValue> parameters) {
+        this(UUID.randomUUID().toString(), jobFullName, dueTime, userId, parameters);
+    }
+
+    /**
+     * Creates the first occurrence of a recurring build.
+     * @param jobFullName the job to build
+     * @param userId the user who scheduled the build
+     * @param parameters the parameter values of every occurrence
+     * @param recurrence when the build is repeated, its start is the due time of the first occurrence
+     */
+    public ScheduledBuild(
+            @NonNull String jobFullName,
+            @CheckForNull String userId,
+            @NonNull List<ParameterValue> parameters,
+            @NonNull Recurrence recurrence) {
+        this(UUID.randomUUID().toString(), jobFullName, recurrence.getStart(), userId, parameters, recurrence, 0);
+    }
+
+    ScheduledBuild(
+            @NonNull String id,
+            @NonNull String jobFullName,
+            long dueTime,
+            @CheckForNull String userId,
+            @NonNull List<ParameterValue> parameters) {
+        this(id, jobFullName, dueTime, userId, parameters, null, 0);
+    }
+
+    ScheduledBuild(
+            @NonNull String id,
+            @NonNull String jobFullName,
+            long dueTime,
+            @CheckForNull String userId,
+            @NonNull List<ParameterValue> parameters,
+            @CheckForNull Recurrence recurrence,
+            int occurrence) {
+        this(id, jobFullName, dueTime, userId, parameters, recurrence, occurrence, Collections.emptyList());
+    }
+
+    ScheduledBuild(
+            @NonNull String id,
+            @NonNull String jobFullName,
+            long dueTime,
+            @CheckForNull String userId,
+            @NonNull List<ParameterValue> parameters,
+            @CheckForNull Recurrence recurrence,
+            int occurrence,
+            @NonNull List<String> coalescedUserIds) {
+        this.id = id;
+        this.jobFullName = jobFullName;
+        this.dueTime = dueTime;
+        this.userId = userId;
+        this.parameters = new ArrayList<>(parameters);
+        this.recurrence = recurrence;
+        this.occurrence = occurrence;
+        this.coalescedUserIds =
+                coalescedUserIds.isEmpty() ? Collections.emptyList() : new ArrayList<>(coalescedUserIds);
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getJobFullName() {
+        return jobFullName;
+    }
+
+    /**
+     * Returns the time the build should start, in milliseconds since the epoch.
+     * @return due time
+     */
+    public long getDueTime() {
+        return dueTime;
+    }
+
+    @CheckForNull
+    public String getUserId() {
+        return userId;
+    }
+
+    @NonNull
+    public List<ParameterValue> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * @return the rule repeating this build, or {@code null} if it is a one-shot build
+     */
+    @CheckForNull
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * @return index of this occurrence of a recurring build, 0 for the first one
+     */
+    public int getOccurrence() {
+        return occurrence;
+    }
+
+    /**
+     * @return users whose requests were merged into this build, in request order, {@code null} for anonymous ones
+     */
+    @NonNull
+    public List<String> getCoalescedUserIds() {
+        return Collections.unmodifiableList(coalescedUserIds);
+    }
+
+    /**
+     * @return number of requests this build stands for, 1 unless schedules were coalesced into it
+     */
+    public int getRequestCount() {
+        return 1 + coalescedUserIds.size();
+    }
+
+    /**
+     * @param dueTime the new due time in milliseconds since the epoch
+     * @return this build moved to a different due time
+     */
+    @NonNull
+    ScheduledBuild withDueTime(long dueTime) {
+        return new ScheduledBuild(
+                id, jobFullName, dueTime, userId, parameters, recurrence, occurrence, coalescedUserIds);
+    }
+
+    /**
+     * @param duplicate a later request for the same job and parameters
+     * @return this build also standing for {@code duplicate}
+     */
+    @NonNull
+    ScheduledBuild coalesce(@NonNull ScheduledBuild duplicate) {
+        List<String> merged = new ArrayList<>(coalescedUserIds);
+        merged.add(duplicate.getUserId());
+        merged.addAll(duplicate.coalescedUserIds);
+        return new ScheduledBuild(id, jobFullName, dueTime, userId, parameters, recurrence, occurrence, merged);
+    }
+
+    /**
+     * Creates the next occurrence of a recurring build.
+     * @param time occurrences at or before this time, in milliseconds since the epoch, are skipped
+     * @return the next occurrence with the same id, or {@code null} if the build does not recur anymore
+     */
+    @CheckForNull
+    ScheduledBuild next(long time) {
+        if (recurrence == null) {
+            return null;
+        }
+        int next = recurrence.next(occurrence, Math.max(time, dueTime));
+        if (next < 0) {
+            return null;
+        }
+        return new ScheduledBuild(id, jobFullName, recurrence.getTime(next), userId, parameters, recurrence, next);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledBuild[" + id + ", " + jobFullName + " at " + dueTime
+                + (recurrence == null ? "" : ", " + recurrence + " #" + occurrence) + "]";
+    }
+}
@@ -0,0 +1,418 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.ParameterValue;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import jenkins.model.Jenkins;
+
+/**
+ * Append-only journal of schedule, cancel and fire events for the {@link ScheduledBuildStore}.
+ * <p>
+ * Every event is written as a length and CRC prefixed record and forced to disk before the call returns, so a
+ * crash can at worst leave a torn record at the end of the journal, which is discarded on the next replay.
+ * {@link #compact(Collection)} writes the pending builds to a snapshot, atomically replaces the previous
+ * snapshot and then empties the journal. Replaying the journal on top of a newer snapshot is harmless, because
+ * every event is idempotent.
+ */
+final class ScheduledBuildJournal implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduledBuildJournal.class.getName());
+
+    private static final int MAGIC = 0x53424A31;
+    private static final int HEADER_LENGTH = Integer.BYTES;
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    static final byte SCHEDULE = 1;
+    static final byte CANCEL = 2;
+    static final byte FIRE = 3;
+
+    private static final int FLAG_PARAMETERS = 1;
+    private static final int FLAG_RECURRENCE = 2;
+    private static final int FLAG_COALESCED = 4;
+
+    private final File journalFile;
+    private final File snapshotFile;
+
+    private FileChannel channel;
+    private int recordCount;
+
+    ScheduledBuildJournal(@NonNull File directory) {
+        this.journalFile = new File(directory, "journal.bin");
+        this.snapshotFile = new File(directory, "snapshot.bin");
+    }
+
+    /**
+     * Reads the snapshot and the journal and opens the journal for appending.
+     * @return the pending builds, in the order they were scheduled
+     * @throws IOException if the journal cannot be opened
+     */
+    @NonNull
+    synchronized Map<String, ScheduledBuild> replay() throws IOException {
+        Map<String, ScheduledBuild> pending = new LinkedHashMap<>();
+        Files.createDirectories(journalFile.toPath().getParent());
+        if (snapshotFile.exists()) {
+            try (DataInputStream in = open(snapshotFile)) {
+                readRecords(in, pending);
+            }
+        }
+        long validLength = HEADER_LENGTH;
+        recordCount = 0;
+        if (journalFile.exists()) {
+            try (DataInputStream in = open(journalFile)) {
+                validLength += readRecords(in, pending);
+            }
+        }
+        channel = FileChannel.open(
+                journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_LENGTH) {
+            writeHeader(channel);
+            channel.force(false);
+        } else if (channel.size() > validLength) {
+            LOGGER.log(Level.WARNING, () -> "Discarding torn records at the end of " + journalFile);
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        channel.position(channel.size());
+        return pending;
+    }
+
+    /**
+     * Appends {@link #SCHEDULE} events for the given builds and forces them to disk.
+     * @param builds the scheduled builds
+     * @throws IOException if the records could not be written
+     */
+    synchronized void scheduled(@NonNull Collection<ScheduledBuild> builds) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (ScheduledBuild build : builds) {
+            writeRecord(buffer, scheduleRecord(build));
+        }
+        append(buffer, builds.size());
+    }
+
+    /**
+     * Appends {@link #CANCEL} or {@link #FIRE} events for the given builds and forces them to disk.
+     * @param type the event type
+     * @param builds the builds that were cancelled or fired
+     * @throws IOException if the records could not be written
+     */
+    synchronized void removed(byte type, @NonNull Collection<ScheduledBuild> builds) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (ScheduledBuild build : builds) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeByte(type);
+            writeString(out, build.getId());
+            writeRecord(buffer, record);
+        }
+        append(buffer, builds.size());
+    }
+
+    /**
+     * Replaces the snapshot with the given builds and empties the journal.
+     * @param pending all currently pending builds
+     * @throws IOException if the snapshot could not be written
+     */
+    synchronized void compact(@NonNull Collection<ScheduledBuild> pending) throws IOException {
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            FileChannel snapshot = out.getChannel();
+            writeHeader(snapshot);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (ScheduledBuild build : pending) {
+                writeRecord(buffer, scheduleRecord(build));
+                if (buffer.size() > 64 * 1024) {
+                    buffer.writeTo(out);
+                    buffer.reset();
+                }
+            }
+            buffer.writeTo(out);
+            snapshot.force(true);
+        }
+        Path target = snapshotFile.toPath();
+        Files.move(tmp.toPath(), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (channel != null) {
+            channel.truncate(HEADER_LENGTH);
+            channel.position(HEADER_LENGTH);
+            channel.force(false);
+        }
+        recordCount = 0;
+        LOGGER.log(Level.FINE, () -> "Compacted journal into a snapshot of " + pending.size() + " builds");
+    }
+
+    /**
+     * Closes the journal and renames the journal and snapshot files, so that an unreadable journal is kept for
+     * inspection and a fresh one can be {@linkplain #replay() opened} in their place.
+     * @param suffix appended to the names of the files
+     * @throws IOException if a file could not be renamed
+     */
+    synchronized void moveAside(@NonNull String suffix) throws IOException {
+        close();
+        for (File file : new File[] {journalFile, snapshotFile}) {
+            if (file.exists()) {
+                Path target = file.toPath().resolveSibling(file.getName() + suffix);
+                Files.move(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+                LOGGER.log(Level.WARNING, () -> "Moved unreadable " + file + " to " + target);
+            }
+        }
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records in the journal since the last compaction.
+     * @return record count
+     */
+    synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(ByteArrayOutputStream buffer, int records) throws IOException {
+        if (channel == null || records == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        recordCount += records;
+    }
+
+    /**
+     * Opens a journal or snapshot file for reading, returning {@code null} if the file has no complete header.
+     */
+    @CheckForNull
+    private static DataInputStream open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 65536));
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            in.close();
+            return null;
+        }
+        if (magic != MAGIC) {
+            in.close();
+            throw new IOException("Not a scheduled build journal: " + file);
+        }
+        return in;
+    }
+
+    /**
+     * Applies records from the stream to {@code pending} until the end of the stream or the first torn record.
+     * Returns the number of bytes of valid records read.
+     */
+    private long readRecords(@CheckForNull DataInputStream in, Map<String, ScheduledBuild> pending) throws IOException {
+        if (in == null) {
+            return 0;
+        }
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        byte[] data = new byte[256];
+        while (true) {
+            int length;
+            int checksum;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    return valid;
+                }
+                if (data.length < length) {
+                    data = new byte[Math.max(length, data.length * 2)];
+                }
+                in.readFully(data, 0, length);
+            } catch (EOFException e) {
+                return valid;
+            }
+            crc.reset();
+            crc.update(data, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return valid;
+            }
+            apply(ByteBuffer.wrap(data, 0, length), pending);
+            valid += 2L * Integer.BYTES + length;
+            recordCount++;
+        }
+    }
+
+    private static void apply(ByteBuffer record, Map<String, ScheduledBuild> pending) throws IOException {
+        byte type = record.get();
+        String id = readString(record);
+        switch (type) {
+            case SCHEDULE:
+                String job = readString(record);
+                long due = record.getLong();
+                String user = record.get() != 0 ? readString(record) : null;
+                int flags = record.get() & 0xFF;
+                String parametersXml = (flags & FLAG_PARAMETERS) != 0 ? readString(record) : null;
+                Recurrence recurrence = null;
+                int occurrence = 0;
+                if ((flags & FLAG_RECURRENCE) != 0) {
+                    recurrence = readRecurrence(record);
+                    occurrence = record.getInt();
+                }
+                List<String> coalesced = (flags & FLAG_COALESCED) != 0 ? readUserIds(record) : Collections.emptyList();
+                List<ParameterValue> parameters;
+                try {
+                    parameters = parametersXml != null ? readParameters(parametersXml) : Collections.emptyList();
+                } catch (RuntimeException e) {
+                    // the record itself is intact, only this build is lost (e.g. its parameter type was uninstalled)
+                    LOGGER.log(
+                            Level.WARNING,
+                            e,
+                            () -> "Skipping scheduled build " + id + " of " + job + ", its parameters cannot be read");
+                    pending.remove(id);
+                    break;
+                }
+                pending.put(id, new ScheduledBuild(id, job, due, user, parameters, recurrence, occurrence, coalesced));
+                break;
+            case CANCEL:
+            case FIRE:
+                pending.remove(id);
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static ByteArrayOutputStream scheduleRecord(ScheduledBuild build) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeByte(SCHEDULE);
+        writeString(out, build.getId());
+        writeString(out, build.getJobFullName());
+        out.writeLong(build.getDueTime());
+        out.writeBoolean(build.getUserId() != null);
+        if (build.getUserId() != null) {
+            writeString(out, build.getUserId());
+        }
+        List<ParameterValue> parameters = build.getParameters();
+        Recurrence recurrence = build.getRecurrence();
+        List<String> coalesced = build.getCoalescedUserIds();
+        out.writeByte((parameters.isEmpty() ? 0 : FLAG_PARAMETERS)
+                | (recurrence == null ? 0 : FLAG_RECURRENCE)
+                | (coalesced.isEmpty() ? 0 : FLAG_COALESCED));
+        if (!parameters.isEmpty()) {
+            writeString(out, Jenkins.XSTREAM2.toXML(new ArrayList<>(parameters)));
+        }
+        if (recurrence != null) {
+            writeString(out, recurrence.getUnit().name());
+            out.writeInt(recurrence.getInterval());
+            out.writeLong(recurrence.getStart());
+            writeString(out, recurrence.getZone().getId());
+            out.writeLong(recurrence.getUntil());
+            out.writeInt(recurrence.getCount());
+            out.writeInt(build.getOccurrence());
+        }
+        if (!coalesced.isEmpty()) {
+            out.writeInt(coalesced.size());
+            for (String userId : coalesced) {
+                out.writeBoolean(userId != null);
+                if (userId != null) {
+                    writeString(out, userId);
+                }
+            }
+        }
+        return record;
+    }
+
+    private static List<String> readUserIds(ByteBuffer record) throws IOException {
+        int count = record.getInt();
+        if (count < 0 || count > record.remaining()) {
+            throw new IOException("Corrupt journal record");
+        }
+        List<String> userIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            userIds.add(record.get() != 0 ? readString(record) : null);
+        }
+        return userIds;
+    }
+
+    private static Recurrence readRecurrence(ByteBuffer record) throws IOException {
+        try {
+            RecurrenceUnit unit = RecurrenceUnit.valueOf(readString(record));
+            int interval = record.getInt();
+            long start = record.getLong();
+            ZoneId zone = ZoneId.of(readString(record));
+            return new Recurrence(unit, interval, start, zone, record.getLong(), record.getInt());
+        } catch (DateTimeException | IllegalArgumentException e) {
+            throw new IOException("Corrupt recurrence in journal record", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ParameterValue> readParameters(String xml) {
+        return (List<ParameterValue>) Jenkins.XSTREAM2.fromXML(xml);
+    }
+
+    private static void writeRecord(ByteArrayOutputStream buffer, ByteArrayOutputStream record) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] data = record.toByteArray();
+        crc.update(data, 0, data.length);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(data.length);
+        out.writeInt((int) crc.getValue());
+        out.write(data);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC);
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer record) throws IOException {
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining()) {
+            throw new IOException("Corrupt journal record");
+        }
+        int offset = record.arrayOffset() + record.position();
+        String value = new String(record.array(), offset, length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jenkins.metrics.api.MetricProvider;
+
+/**
+ * Publishes {@link ScheduledBuildMetrics} through the Metrics plugin, when it is installed.
+ */
+@Extension(optional = true)
+public class ScheduledBuildMetricProvider extends MetricProvider {
+
+    private static final String PREFIX = "schedule-build.";
+
+    @NonNull
+    @Override
+    public MetricSet getMetricSet() {
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+        metrics.put(PREFIX + "pending", (Gauge<Integer>) () -> ScheduledBuildStore.get().size());
+        ScheduledBuildMetrics.Stats global = ScheduledBuildMetrics.get().getGlobal();
+        histogram(metrics, "buildable-delay", global.buildableDelay);
+        histogram(metrics, "executor-wait", global.executorWait);
+        histogram(metrics, "start-delay", global.startDelay);
+        Map<String, Metric> unmodifiable = Collections.unmodifiableMap(metrics);
+        return () -> unmodifiable;
+    }
+
+    private static void histogram(Map<String, Metric> metrics, String name, LatencyHistogram histogram) {
+        metrics.put(PREFIX + name + ".count", (Gauge<Long>) histogram::getCount);
+        metrics.put(PREFIX + name + ".p50", (Gauge<Long>) () -> histogram.getPercentile(0.5));
+        metrics.put(PREFIX + name + ".p95", (Gauge<Long>) () -> histogram.getPercentile(0.95));
+        metrics.put(PREFIX + name + ".p99", (Gauge<Long>) () -> histogram.getPercentile(0.99));
+        metrics.put(PREFIX + name + ".max", (Gauge<Long>) histogram::getMax);
+    }
+}
@@ -0,0 +1,151 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import net.sf.json.JSONObject;
+
+/**
+ * Latency of scheduled builds, globally and per job.
+ * <p>
+ * For every build released by {@link ScheduledBuildReleaser} three durations are recorded: from the requested
+ * time until the queue item became buildable, from then until the build started, and from the requested time until
+ * the build started. Recording only touches {@link LatencyHistogram}s, so nothing on the queue or build path
+ * waits for a lock. The histograms of a job are dropped when it is deleted, and follow it when it is renamed or
+ * moved.
+ */
+@Extension
+public class ScheduledBuildMetrics {
+
+    private final Stats global = new Stats();
+
+    private final Map<String, Stats> jobs = new ConcurrentHashMap<>();
+
+    public static ScheduledBuildMetrics get() {
+        return ExtensionList.lookupSingleton(ScheduledBuildMetrics.class);
+    }
+
+    Stats getGlobal() {
+        return global;
+    }
+
+    void record(@NonNull String job, long requested, long buildable, long started) {
+        global.record(requested, buildable, started);
+        jobs.computeIfAbsent(job, name -> new Stats()).record(requested, buildable, started);
+    }
+
+    /**
+     * Drops the histograms of a deleted item, and of the jobs within it if it is a folder.
+     * @param fullName full name of the item
+     */
+    void remove(@NonNull String fullName) {
+        String prefix = fullName + '/';
+        jobs.keySet().removeIf(job -> job.equals(fullName) || job.startsWith(prefix));
+    }
+
+    /**
+     * Moves the histograms of a renamed or moved job to its new name.
+     * @param oldFullName full name of the job before
+     * @param newFullName full name of the job after
+     */
+    void rename(@NonNull String oldFullName, @NonNull String newFullName) {
+        Stats stats = jobs.remove(oldFullName);
+        if (stats != null) {
+            jobs.put(newFullName, stats);
+        }
+    }
+
+    /**
+     * @return pending and rate limited build counts, executors provisioned ahead, global histograms and histograms
+     *     per job
+     */
+    @NonNull
+    JSONObject toJSON() {
+        JSONObject perJob = new JSONObject();
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(jobs).entrySet()) {
+            perJob.element(entry.getKey(), entry.getValue().toJSON());
+        }
+        return new JSONObject()
+                .element("pending", ScheduledBuildStore.get().size())
+                .element("held", ExtensionList.lookupSingleton(ScheduledBuildReleaser.class).getHeld())
+                .element("provisionedAhead", ScheduledBuildProvisioningStrategy.get().getRequested())
+                .element("global", global.toJSON())
+                .element("jobs", perJob);
+    }
+
+    static final class Stats {
+        /** From the requested time until the queue item became buildable. */
+        final LatencyHistogram buildableDelay = new LatencyHistogram();
+        /** From becoming buildable until the build started on an executor. */
+        final LatencyHistogram executorWait = new LatencyHistogram();
+        /** From the requested time until the build started. */
+        final LatencyHistogram startDelay = new LatencyHistogram();
+
+        void record(long requested, long buildable, long started) {
+            if (buildable > 0) {
+                buildableDelay.record(buildable - requested);
+                executorWait.record(started - buildable);
+            }
+            startDelay.record(started - requested);
+        }
+
+        JSONObject toJSON() {
+            return new JSONObject()
+                    .element("buildableDelay", buildableDelay.toJSON())
+                    .element("executorWait", executorWait.toJSON())
+                    .element("startDelay", startDelay.toJSON());
+        }
+    }
+
+    @Extension
+    public static class JobListener extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            get().remove(item.getFullName());
+        }
+
+        // Also called for every job within a renamed or moved folder
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().rename(oldFullName, newFullName);
+        }
+    }
+
+    @Extension
+    public static class BuildableListener extends QueueListener {
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            ScheduledBuildTiming timing = bi.getAction(ScheduledBuildTiming.class);
+            if (timing != null) {
+                timing.buildable(System.currentTimeMillis());
+            }
+        }
+    }
+
+    @Extension
+    public static class StartListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> run, TaskListener listener) {
+            ScheduledBuildTiming timing = run.getAction(ScheduledBuildTiming.class);
+            if (timing == null) {
+                return;
+            }
+            run.removeAction(timing);
+            get().record(
+                    run.getParent().getFullName(),
+                    timing.getRequestedTime(),
+                    timing.getBuildableTime(),
+                    run.getStartTimeInMillis());
+        }
+    }
+}
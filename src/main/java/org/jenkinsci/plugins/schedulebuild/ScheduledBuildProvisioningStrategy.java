@@ -0,0 +1,181 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Label;
+import hudson.model.LoadStatistics;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.slaves.Cloud;
+import hudson.slaves.CloudProvisioningListener;
+import hudson.slaves.NodeProvisioner;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Brings cloud capacity online ahead of scheduled builds.
+ * <p>
+ * A scheduled build waits out its quiet period in the queue, where it does not count as load, so without this
+ * strategy agents are only requested once the build is due and its start is delayed by the agent's launch time.
+ * This strategy runs before the standard one for every label. It counts the scheduled builds of jobs restricted to
+ * the label that are due within the configured {@linkplain ScheduleBuildGlobalConfiguration#getProvisioningLookahead()
+ * look-ahead window}, whether they are still in the {@link ScheduledBuildStore}, held back by a
+ * {@link LabelRateLimit} or waiting in the queue, and asks the clouds for the executors this demand lacks. The
+ * standard strategy then sees them as planned capacity and only provisions for the rest of the queue.
+ * <p>
+ * Demand is counted at most once per second for all labels together, and only while a window is configured.
+ */
+@Extension(ordinal = 100)
+public class ScheduledBuildProvisioningStrategy extends NodeProvisioner.Strategy {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduledBuildProvisioningStrategy.class.getName());
+
+    private static final long REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private volatile Demand demand = new Demand(Long.MIN_VALUE, 0, Collections.emptyMap());
+
+    /** Executors requested ahead of scheduled builds since startup. */
+    private final AtomicLong requested = new AtomicLong();
+
+    @NonNull
+    @Override
+    public NodeProvisioner.StrategyDecision apply(@NonNull NodeProvisioner.StrategyState state) {
+        long lookahead = TimeUnit.SECONDS.toMillis(ScheduleBuildGlobalConfiguration.get().getProvisioningLookahead());
+        if (lookahead <= 0) {
+            return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+        }
+        Label label = state.getLabel();
+        int upcoming = getDemand(System.currentTimeMillis(), lookahead).getOrDefault(expression(label), 0);
+        if (upcoming == 0) {
+            return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+        }
+        LoadStatistics.LoadStatisticsSnapshot snapshot = state.getSnapshot();
+        // Capacity not taken by builds that can run right now, those are left to the standard strategy
+        int spare = snapshot.getAvailableExecutors()
+                + snapshot.getConnectingExecutors()
+                + state.getPlannedCapacitySnapshot()
+                + state.getAdditionalPlannedCapacity()
+                - snapshot.getQueueLength();
+        int excess = upcoming - Math.max(0, spare);
+        for (Cloud cloud : Jenkins.get().clouds) {
+            if (excess <= 0) {
+                break;
+            }
+            Cloud.CloudState cloudState = new Cloud.CloudState(label, state.getAdditionalPlannedCapacity());
+            if (!cloud.canProvision(cloudState) || vetoed(cloud, cloudState, excess)) {
+                continue;
+            }
+            Collection<NodeProvisioner.PlannedNode> planned = cloud.provision(cloudState, excess);
+            if (planned.isEmpty()) {
+                continue;
+            }
+            for (CloudProvisioningListener listener : CloudProvisioningListener.all()) {
+                listener.onStarted(cloud, label, planned);
+            }
+            state.recordPendingLaunches(planned);
+            int executors = 0;
+            for (NodeProvisioner.PlannedNode node : planned) {
+                executors += node.numExecutors;
+            }
+            int requestedExecutors = executors;
+            LOGGER.log(Level.FINE, () -> "Requested " + requestedExecutors + " executors from " + cloud.name
+                    + " for scheduled builds of " + label);
+            requested.addAndGet(executors);
+            excess -= executors;
+        }
+        return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+    }
+
+    /**
+     * @return number of executors requested ahead of scheduled builds since startup
+     */
+    long getRequested() {
+        return requested.get();
+    }
+
+    static ScheduledBuildProvisioningStrategy get() {
+        return ExtensionList.lookupSingleton(ScheduledBuildProvisioningStrategy.class);
+    }
+
+    /**
+     * @param now the current time in milliseconds since the epoch
+     * @param lookahead length of the window in milliseconds
+     * @return number of scheduled builds due by the end of the window, by label expression
+     */
+    @NonNull
+    Map<String, Integer> getDemand(long now, long lookahead) {
+        Demand current = demand;
+        if (current.lookahead != lookahead || now < current.time || now - current.time >= REFRESH_MILLIS) {
+            current = new Demand(now, lookahead, count(now + lookahead));
+            demand = current;
+        }
+        return current.byLabel;
+    }
+
+    private static Map<String, Integer> count(long horizon) {
+        Map<String, Integer> byJob = new HashMap<>();
+        ScheduledBuildQuery query = new ScheduledBuildQuery(null, null, null, Long.MIN_VALUE, horizon, null);
+        for (ScheduledBuild build : ScheduledBuildStore.get().find(query, Integer.MAX_VALUE)) {
+            byJob.merge(build.getJobFullName(), 1, Integer::sum);
+        }
+        for (ScheduledBuild build : ExtensionList.lookupSingleton(ScheduledBuildReleaser.class).getHeldBuilds()) {
+            if (build.getDueTime() <= horizon) {
+                byJob.merge(build.getJobFullName(), 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> byLabel = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : byJob.entrySet()) {
+            Job<?, ?> job = Jenkins.get().getItemByFullName(entry.getKey(), Job.class);
+            if (job instanceof Queue.Task) {
+                byLabel.merge(expression(((Queue.Task) job).getAssignedLabel()), entry.getValue(), Integer::sum);
+            }
+        }
+        for (Queue.Item item : Jenkins.get().getQueue().getItems()) {
+            ScheduledBuildTiming timing = item.getAction(ScheduledBuildTiming.class);
+            if (item instanceof Queue.WaitingItem && timing != null && timing.getRequestedTime() <= horizon) {
+                byLabel.merge(expression(item.getAssignedLabel()), 1, Integer::sum);
+            }
+        }
+        return byLabel;
+    }
+
+    private static String expression(@CheckForNull Label label) {
+        return label == null ? "" : label.getExpression();
+    }
+
+    private static boolean vetoed(Cloud cloud, Cloud.CloudState state, int workload) {
+        for (CloudProvisioningListener listener : CloudProvisioningListener.all()) {
+            CauseOfBlockage blockage = listener.canProvision(cloud, state, workload);
+            if (blockage != null) {
+                LOGGER.log(Level.FINE, () -> "Not provisioning from " + cloud.name + ": " + blockage);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Demand counted at one point in time.
+     */
+    private static final class Demand {
+        final long time;
+        final long lookahead;
+        final Map<String, Integer> byLabel;
+
+        Demand(long time, long lookahead, Map<String, Integer> byLabel) {
+            this.time = time;
+            this.lookahead = lookahead;
+            this.byLabel = byLabel;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.function.Predicate;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.StaplerRequest2;
+
+/**
+ * Filters, time range and position of a listing of pending {@link ScheduledBuild}s.
+ * <p>
+ * Listings are ordered by due time. A cursor holds the due time and id of the last build of the previous page,
+ * so the next page starts right after it even if builds were scheduled or released in the meantime, and no page
+ * needs to skip over the builds listed before it.
+ */
+@Restricted(NoExternalUse.class)
+public final class ScheduledBuildQuery implements Predicate<ScheduledBuild> {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    @CheckForNull
+    private final String job;
+
+    @CheckForNull
+    private final String folder;
+
+    @CheckForNull
+    private final String user;
+
+    private final long from;
+    private final long to;
+
+    /** Stands in for the last build of the previous page in the due time index. */
+    @CheckForNull
+    private final ScheduledBuild cursor;
+
+    ScheduledBuildQuery(
+            @CheckForNull String job,
+            @CheckForNull String folder,
+            @CheckForNull String user,
+            long from,
+            long to,
+            @CheckForNull ScheduledBuild cursor) {
+        this.job = job;
+        this.folder = folder;
+        this.user = user;
+        this.from = from;
+        this.to = to;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Reads a query from the {@code job}, {@code folder}, {@code user}, {@code from}, {@code to} and {@code cursor}
+     * request parameters. Times are ISO-8601 date times, in the configured time zone if they carry no offset.
+     * @param req the request
+     * @return the query
+     * @throws IllegalArgumentException if a parameter is not valid
+     */
+    @NonNull
+    static ScheduledBuildQuery fromRequest(@NonNull StaplerRequest2 req) {
+        ZoneId zone = ScheduleBuildGlobalConfiguration.get().getZoneId();
+        return new ScheduledBuildQuery(
+                Util.fixEmptyAndTrim(req.getParameter("job")),
+                Util.fixEmptyAndTrim(req.getParameter("folder")),
+                Util.fixEmptyAndTrim(req.getParameter("user")),
+                parseTime(req.getParameter("from"), zone, Long.MIN_VALUE),
+                parseTime(req.getParameter("to"), zone, Long.MAX_VALUE),
+                parseCursor(req.getParameter("cursor")));
+    }
+
+    /**
+     * Reads the page size from the {@code limit} request parameter.
+     * @param req the request
+     * @return the page size, between 1 and {@link #MAX_LIMIT}
+     * @throws IllegalArgumentException if the parameter is not a number
+     */
+    static int limit(@NonNull StaplerRequest2 req) {
+        String limit = Util.fixEmptyAndTrim(req.getParameter("limit"));
+        return limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+    }
+
+    /**
+     * @param last the last build of a page
+     * @return the cursor of the page following {@code last}
+     */
+    @NonNull
+    static String cursor(@NonNull ScheduledBuild last) {
+        return last.getDueTime() + ":" + last.getId();
+    }
+
+    /**
+     * @param last the last build of a page
+     * @return the same query for the page following {@code last}
+     */
+    @NonNull
+    ScheduledBuildQuery after(@NonNull ScheduledBuild last) {
+        return new ScheduledBuildQuery(job, folder, user, from, to, last);
+    }
+
+    /**
+     * @param index pending builds ordered by due time
+     * @return the part of {@code index} this query starts at
+     */
+    @NonNull
+    Iterable<ScheduledBuild> tail(@NonNull NavigableSet<ScheduledBuild> index) {
+        if (cursor != null) {
+            return index.tailSet(cursor, false);
+        }
+        if (from == Long.MIN_VALUE) {
+            return index;
+        }
+        // The empty id sorts before every build due at the same time
+        return index.tailSet(probe(from, ""), true);
+    }
+
+    /**
+     * @return latest due time to list, in milliseconds since the epoch
+     */
+    long getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean test(ScheduledBuild build) {
+        return (job == null || job.equals(build.getJobFullName()))
+                && (folder == null || build.getJobFullName().startsWith(folder + "/"))
+                && (user == null || user.equals(build.getUserId()));
+    }
+
+    /**
+     * @param last the last build of a page
+     * @return the URL query string of the page following {@code last}, with the same filters
+     */
+    @NonNull
+    public String nextPage(@NonNull ScheduledBuild last) {
+        StringBuilder query = new StringBuilder();
+        append(query, "cursor", cursor(last));
+        append(query, "job", job);
+        append(query, "folder", folder);
+        append(query, "user", user);
+        if (to != Long.MAX_VALUE) {
+            append(query, "to", Instant.ofEpochMilli(to).toString());
+        }
+        return query.toString();
+    }
+
+    private static void append(StringBuilder query, String name, @CheckForNull String value) {
+        if (value == null) {
+            return;
+        }
+        if (query.length() > 0) {
+            query.append('&');
+        }
+        query.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+
+    private static long parseTime(@CheckForNull String text, ZoneId zone, long otherwise) {
+        String value = Util.fixEmptyAndTrim(text);
+        if (value == null) {
+            return otherwise;
+        }
+        try {
+            return ScheduleBuildApi.parseTime(value, zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a valid date time: " + value, e);
+        }
+    }
+
+    @CheckForNull
+    private static ScheduledBuild parseCursor(@CheckForNull String text) {
+        String value = Util.fixEmptyAndTrim(text);
+        if (value == null) {
+            return null;
+        }
+        int separator = value.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Not a valid cursor: " + value);
+        }
+        return probe(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+    }
+
+    private static ScheduledBuild probe(long dueTime, String id) {
+        return new ScheduledBuild(id, "", dueTime, null, Collections.emptyList());
+    }
+}
@@ -0,0 +1,264 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Job;
+import hudson.model.ParametersAction;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.triggers.SafeTimerTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.model.ParameterizedJobMixIn;
+import jenkins.util.Timer;
+
+/**
+ * Moves builds from the {@link ScheduledBuildStore} into the {@link hudson.model.Queue} once they are within the
+ * configured release lead time of their due time.
+ * <p>
+ * This is the only periodic timer driving scheduled builds; it runs once per tick of the store's timing wheel.
+ * Builds are handed over when the time left until they are due is a whole number of seconds, so the quiet period
+ * the queue applies ends at the due time rather than up to a second later. Builds of labels with a
+ * {@link LabelRateLimit} go through a {@link ReleaseThrottle} first, which holds them until they are due and then
+ * releases them at the configured rate.
+ * <p>
+ * A due build is checked against the {@link BlackoutWindow}s once more before it is released, as windows may have
+ * been added since it was scheduled. It is then deferred to the end of the window, or dropped if build times in
+ * windows are rejected.
+ * <p>
+ * Builds are only removed from the store's journal once they were handed to the queue. A crash while a build is
+ * held or waiting for its timer replays it as a missed build, while a crash right after the queue accepted it may
+ * run it twice.
+ */
+@Extension
+public class ScheduledBuildReleaser extends PeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduledBuildReleaser.class.getName());
+
+    /** Milestone attained once the held builds were handed to the queue on shutdown. */
+    static final String FLUSHED = "schedule-build.flushed";
+
+    private ReleaseThrottle throttle = new ReleaseThrottle(Collections.emptyList(), 0);
+
+    @Override
+    public long getRecurrencePeriod() {
+        return ScheduledBuildStore.TICK_MILLIS;
+    }
+
+    @Override
+    protected void doRun() {
+        release(System.currentTimeMillis());
+    }
+
+    /**
+     * Submits every stored build that is due within the release lead time of {@code now} and not in a blackout
+     * window.
+     * <p>
+     * Builds released together, like the jobs of a view scheduled for the same time, are handed to the queue while
+     * holding its lock once, instead of once per build, and builds needing the same delay to be aligned on a whole
+     * second share a single timer task.
+     * @param now the current time in milliseconds since the epoch
+     * @return the number of builds handed to the queue, or to a timer that submits them within the next second
+     */
+    int release(long now) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        ScheduledBuildStore store = ScheduledBuildStore.get();
+        long leadTime = TimeUnit.SECONDS.toMillis(config.getReleaseLeadTime());
+        List<ScheduledBuild> due = new ArrayList<>();
+        List<ScheduledBuild> dropped = new ArrayList<>();
+        for (ScheduledBuild build : store.pollDue(now + leadTime)) {
+            long end = config.getBlackoutEnd(build.getDueTime());
+            if (end == build.getDueTime()) {
+                due.add(build);
+            } else if (config.getBlackoutPolicy() == BlackoutPolicy.MOVE_TO_END) {
+                LOGGER.log(Level.INFO, () -> "Deferring " + build + " to the end of its blackout window at " + end);
+                store.defer(build, end);
+            } else {
+                LOGGER.log(Level.INFO, () -> "Dropping " + build + ", it is due in a blackout window");
+                dropped.add(build);
+            }
+        }
+        store.fired(dropped);
+        List<ScheduledBuild> immediate = new ArrayList<>();
+        Map<Long, List<ScheduledBuild>> aligned = new HashMap<>();
+        for (ScheduledBuild build : throttle(due, now)) {
+            long alignment = Math.floorMod(build.getDueTime() - now, TimeUnit.SECONDS.toMillis(1));
+            if (build.getDueTime() > now && alignment > 0) {
+                aligned.computeIfAbsent(alignment, a -> new ArrayList<>()).add(build);
+            } else {
+                immediate.add(build);
+            }
+        }
+        int released = fire(immediate, now);
+        for (Map.Entry<Long, List<ScheduledBuild>> entry : aligned.entrySet()) {
+            Timer.get().schedule(new Submission(entry.getValue()), entry.getKey(), TimeUnit.MILLISECONDS);
+            released += entry.getValue().size();
+        }
+        return released;
+    }
+
+    /**
+     * Passes due builds through the release throttle, recreating it with the held builds if the configured limits
+     * changed.
+     * @param due builds taken from the store
+     * @param now the current time in milliseconds since the epoch
+     * @return the builds that may be handed to the queue now
+     */
+    private synchronized List<ScheduledBuild> throttle(List<ScheduledBuild> due, long now) {
+        List<LabelRateLimit> limits = ScheduleBuildGlobalConfiguration.get().getReleaseRateLimits();
+        if (!limits.equals(throttle.getLimits())) {
+            ReleaseThrottle previous = throttle;
+            throttle = new ReleaseThrottle(limits, now);
+            for (ScheduledBuild build : previous.drain()) {
+                throttle.hold(build, label(build));
+            }
+        }
+        for (ScheduledBuild build : due) {
+            throttle.hold(build, label(build));
+        }
+        return throttle.poll(now);
+    }
+
+    /**
+     * @return number of due builds held back by the release rate limits
+     */
+    synchronized int getHeld() {
+        return throttle.size();
+    }
+
+    /**
+     * @return the due builds held back by the release rate limits
+     */
+    @NonNull
+    synchronized List<ScheduledBuild> getHeldBuilds() {
+        return throttle.getHeld();
+    }
+
+    /**
+     * Hands the builds held back by the release rate limits to the queue, which keeps them across the restart.
+     */
+    @Terminator(attains = FLUSHED)
+    public static void flush() {
+        ScheduledBuildReleaser releaser = ExtensionList.lookupSingleton(ScheduledBuildReleaser.class);
+        List<ScheduledBuild> held;
+        synchronized (releaser) {
+            held = releaser.throttle.drain();
+        }
+        fire(held, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the label expression of the build's job, empty if it can run anywhere or no longer exists
+     */
+    private static String label(ScheduledBuild build) {
+        return LoadLeveling.label(build.getJobFullName());
+    }
+
+    /**
+     * Hands builds taken from the store to the queue, then removes them from the store's journal.
+     * @return the number of builds the queue accepted
+     */
+    private static int fire(@NonNull List<ScheduledBuild> builds, long now) {
+        int accepted = submitAll(builds, now);
+        ScheduledBuildStore.get().fired(builds);
+        return accepted;
+    }
+
+    /**
+     * Hands several scheduled builds to the queue while holding its lock once.
+     * @param builds the builds to submit
+     * @param now the current time in milliseconds since the epoch, the quiet periods are computed from it
+     * @return the number of builds the queue accepted
+     */
+    static int submitAll(@NonNull List<ScheduledBuild> builds, long now) {
+        if (builds.isEmpty()) {
+            return 0;
+        }
+        int[] accepted = new int[1];
+        Set<Integer> quietPeriods = new HashSet<>();
+        Queue.withLock(() -> {
+            for (ScheduledBuild build : builds) {
+                int quietPeriod = submit(build, now);
+                if (quietPeriod >= 0) {
+                    accepted[0]++;
+                    quietPeriods.add(quietPeriod);
+                }
+            }
+        });
+        for (int quietPeriod : quietPeriods) {
+            if (quietPeriod > 0) {
+                // The queue only checks waiting items every few seconds, have it check as soon as the builds are due
+                Runnable maintenance = Jenkins.get().getQueue()::scheduleMaintenance;
+                Timer.get().schedule(maintenance, quietPeriod, TimeUnit.SECONDS);
+            }
+        }
+        return accepted[0];
+    }
+
+    /**
+     * Hands a scheduled build to the queue, with a quiet period covering the time left until it is due.
+     * @param build the build to submit
+     * @param now the current time in milliseconds since the epoch, the quiet period is computed from it
+     * @return the quiet period in seconds if the queue accepted the build, otherwise {@code -1}
+     */
+    private static int submit(@NonNull ScheduledBuild build, long now) {
+        Job<?, ?> job = Jenkins.get().getItemByFullName(build.getJobFullName(), Job.class);
+        if (job == null) {
+            LOGGER.log(Level.WARNING, () -> "Dropping " + build + ", job no longer exists");
+            return -1;
+        }
+        int quietPeriod = (int) Math.max(0, TimeUnit.MILLISECONDS.toSeconds(build.getDueTime() - now + 999));
+        List<Action> actions = new ArrayList<>();
+        List<Cause> causes = new ArrayList<>(build.getRequestCount());
+        causes.add(new Cause.UserIdCause(build.getUserId()));
+        for (String userId : build.getCoalescedUserIds()) {
+            // Every requester of a coalesced build shows up as a cause of it
+            causes.add(new Cause.UserIdCause(userId));
+        }
+        actions.add(new CauseAction(causes));
+        actions.add(new ScheduledBuildTiming(build.getDueTime()));
+        if (!build.getParameters().isEmpty()) {
+            actions.add(new ParametersAction(build.getParameters()));
+        }
+        QueueTaskFuture<?> future =
+                ParameterizedJobMixIn.scheduleBuild2(job, quietPeriod, actions.toArray(new Action[0]));
+        if (future == null) {
+            LOGGER.log(Level.WARNING, () -> "Dropping " + build + ", job is not buildable");
+            return -1;
+        }
+        LOGGER.log(Level.FINE, () -> "Released " + build + " with quiet period " + quietPeriod);
+        return quietPeriod;
+    }
+
+    /**
+     * Submits builds once the time left until they are due is a whole number of seconds.
+     */
+    private static final class Submission extends SafeTimerTask {
+
+        private final List<ScheduledBuild> builds;
+
+        Submission(List<ScheduledBuild> builds) {
+            this.builds = builds;
+        }
+
+        @Override
+        protected void doRun() {
+            fire(builds, System.currentTimeMillis());
+        }
+    }
+}
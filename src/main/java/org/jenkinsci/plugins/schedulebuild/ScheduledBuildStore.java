@@ -0,0 +1,646 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.ParameterValue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Holds scheduled builds outside of the {@link hudson.model.Queue} until they are close to their due time.
+ * <p>
+ * Keeping far-future builds out of the queue means that {@code Queue.maintain()} only has to deal with
+ * builds that can actually run soon. {@link ScheduledBuildReleaser} moves entries into the queue once they
+ * are within the configured release lead time.
+ * <p>
+ * Pending builds are held in a {@link TimingWheel}, so a single periodic task releases due entries no matter how
+ * many builds are pending, and in a sorted index serving listings in due time order, see
+ * {@link #find(ScheduledBuildQuery, int)}. Scheduling and cancelling take logarithmic time. Every change is
+ * recorded in a {@link ScheduledBuildJournal} which is replayed on startup.
+ * <p>
+ * A recurring build is a single entry for its next occurrence. When it is released the following occurrence is
+ * added under the same id, following the {@link BlackoutPolicy} if it falls in a {@link BlackoutWindow}.
+ * <p>
+ * A released build stays in the journal until the {@link ScheduledBuildReleaser} reports it {@linkplain
+ * #fired(Collection) fired}, so a build held back by the release rate limits, or waiting to be aligned on a whole
+ * second, is replayed as a missed build after a crash instead of being lost.
+ */
+@Extension
+public class ScheduledBuildStore {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduledBuildStore.class.getName());
+
+    /** Resolution of the release timer. */
+    static final long TICK_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    /** How many blackout windows in a row the occurrences of a recurring build may be skipped over. */
+    private static final int MAX_SKIPPED_WINDOWS = 100;
+
+    private final TimingWheel<ScheduledBuild> wheel = new TimingWheel<>(TICK_MILLIS, 8, System.currentTimeMillis());
+
+    private final Map<String, TimingWheel.Entry<ScheduledBuild>> byId = new HashMap<>();
+
+    /** Pending builds ordered by {@link ScheduledBuild#BY_DUE_TIME}, for listings starting at a cursor. */
+    private final NavigableSet<ScheduledBuild> byDueTime = new TreeSet<>(ScheduledBuild.BY_DUE_TIME);
+
+    /** Number of pending builds per label and minute, used to find lightly loaded times. */
+    private final Map<LoadLeveling.Slot, Integer> slots = new HashMap<>();
+
+    /**
+     * Slot every pending build is counted in, by id. The label of a job is looked up when its build is added, so a
+     * build is taken out of the slot it was counted in even if the label of the job changed since.
+     */
+    private final Map<String, LoadLeveling.Slot> slotById = new HashMap<>();
+
+    /**
+     * One-shot builds by job, parameters and coalescing window, to find the build a new schedule duplicates with a
+     * few hash lookups. Only maintained while coalescing is on.
+     */
+    private final Map<CoalescingKey, ScheduledBuild> coalescible = new HashMap<>();
+
+    /** Builds taken by {@link #pollDue(long)} that were not handed to the queue yet, by id. */
+    private final Map<String, ScheduledBuild> released = new HashMap<>();
+
+    /** Width of the buckets of {@link #coalescible} in milliseconds, 0 while coalescing is off. */
+    private long coalescingWindow;
+
+    @CheckForNull
+    private ScheduledBuildJournal journal;
+
+    public static ScheduledBuildStore get() {
+        return ExtensionList.lookupSingleton(ScheduledBuildStore.class);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        get().load(getJournalDirectory());
+    }
+
+    @Terminator(requires = ScheduledBuildReleaser.FLUSHED)
+    public static void shutdown() throws IOException {
+        get().close();
+    }
+
+    static File getJournalDirectory() {
+        return new File(Jenkins.get().getRootDir(), "schedule-build");
+    }
+
+    /**
+     * Adds a build to the store.
+     * @param build the build to schedule
+     * @return {@code build}, or the pending build it was coalesced into
+     */
+    @NonNull
+    public ScheduledBuild schedule(@NonNull ScheduledBuild build) {
+        return scheduleAll(Collections.singletonList(build)).get(0);
+    }
+
+    /**
+     * Adds several builds to the store, writing them to the journal in a single batch.
+     * <p>
+     * If a {@linkplain ScheduleBuildGlobalConfiguration#getCoalescingWindow() coalescing window} is configured, a
+     * one-shot build is merged into a pending one-shot build of the same job with equal parameters that is due
+     * within the window, including an earlier build of the same batch. The pending build keeps its id and due time
+     * and records the user of the merged one.
+     * @param builds the builds to schedule
+     * @return for each of {@code builds}, the build itself or the pending build it was coalesced into
+     */
+    @NonNull
+    public synchronized List<ScheduledBuild> scheduleAll(@NonNull Collection<ScheduledBuild> builds) {
+        long window = TimeUnit.SECONDS.toMillis(ScheduleBuildGlobalConfiguration.get().getCoalescingWindow());
+        if (window != coalescingWindow) {
+            reindexCoalescible(window);
+        }
+        List<ScheduledBuild> scheduled = new ArrayList<>(builds.size());
+        Map<String, ScheduledBuild> changed = new LinkedHashMap<>();
+        for (ScheduledBuild build : builds) {
+            ScheduledBuild duplicated = findCoalescible(build);
+            ScheduledBuild added = duplicated == null ? build : duplicated.coalesce(build);
+            add(added);
+            scheduled.add(added);
+            changed.put(added.getId(), added);
+            if (duplicated == null) {
+                LOGGER.log(Level.FINE, () -> "Scheduled " + build);
+            } else {
+                LOGGER.log(Level.FINE, () -> "Coalesced " + build + " into " + added);
+            }
+        }
+        record(ScheduledBuildJournal.SCHEDULE, changed.values());
+        return scheduled;
+    }
+
+    /**
+     * Removes a pending build from the store.
+     * @param id the id of the scheduled build
+     * @return the removed build, or {@code null} if there was no pending build with this id
+     */
+    @CheckForNull
+    public ScheduledBuild cancel(@NonNull String id) {
+        List<ScheduledBuild> removed = cancelAll(Collections.singletonList(id));
+        return removed.isEmpty() ? null : removed.get(0);
+    }
+
+    /**
+     * Removes several pending builds from the store, writing them to the journal in a single batch.
+     * @param ids the ids of the scheduled builds
+     * @return the removed builds, ids without a pending build are skipped
+     */
+    @NonNull
+    public synchronized List<ScheduledBuild> cancelAll(@NonNull Collection<String> ids) {
+        List<ScheduledBuild> removed = new ArrayList<>();
+        for (String id : ids) {
+            TimingWheel.Entry<ScheduledBuild> entry = byId.remove(id);
+            if (entry != null) {
+                wheel.cancel(entry);
+                unindex(entry.getPayload());
+                removed.add(entry.getPayload());
+            }
+        }
+        if (!removed.isEmpty()) {
+            record(ScheduledBuildJournal.CANCEL, removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Moves a pending build to a different due time, keeping its id, user, parameters and recurrence.
+     * @param id the id of the scheduled build
+     * @param dueTime the new due time in milliseconds since the epoch
+     * @return the moved build, or {@code null} if there was no pending build with this id
+     */
+    @CheckForNull
+    public ScheduledBuild reschedule(@NonNull String id, long dueTime) {
+        List<ScheduledBuild> moved = rescheduleAll(Collections.singletonMap(id, dueTime));
+        return moved.isEmpty() ? null : moved.get(0);
+    }
+
+    /**
+     * Moves several pending builds to different due times, writing them to the journal in a single batch.
+     * Each move updates the timing wheel and the due time index in place, the build is pending throughout.
+     * @param dueTimes the new due time of each build, by id
+     * @return the moved builds, ids without a pending build are skipped
+     */
+    @NonNull
+    public synchronized List<ScheduledBuild> rescheduleAll(@NonNull Map<String, Long> dueTimes) {
+        List<ScheduledBuild> moved = new ArrayList<>();
+        for (Map.Entry<String, Long> dueTime : dueTimes.entrySet()) {
+            TimingWheel.Entry<ScheduledBuild> entry = byId.get(dueTime.getKey());
+            if (entry != null) {
+                ScheduledBuild build = entry.getPayload().withDueTime(dueTime.getValue());
+                add(build);
+                moved.add(build);
+                LOGGER.log(Level.FINE, () -> "Rescheduled " + build);
+            }
+        }
+        if (!moved.isEmpty()) {
+            record(ScheduledBuildJournal.SCHEDULE, moved);
+        }
+        return moved;
+    }
+
+    @CheckForNull
+    public synchronized ScheduledBuild getById(@NonNull String id) {
+        TimingWheel.Entry<ScheduledBuild> entry = byId.get(id);
+        return entry == null ? null : entry.getPayload();
+    }
+
+    /**
+     * Returns a copy of all pending builds ordered by due time.
+     * @return pending builds
+     */
+    @NonNull
+    public synchronized List<ScheduledBuild> getPending() {
+        return new ArrayList<>(byDueTime);
+    }
+
+    /**
+     * Returns pending builds matching a query in due time order, starting after the query's cursor.
+     * <p>
+     * Only the requested page is copied, so a listing can walk through any number of pending builds page by page.
+     * @param query filters, time range and cursor
+     * @param limit maximum number of builds to return
+     * @return the matching builds
+     */
+    @NonNull
+    synchronized List<ScheduledBuild> find(@NonNull ScheduledBuildQuery query, int limit) {
+        List<ScheduledBuild> page = new ArrayList<>(Math.min(limit, byDueTime.size()));
+        for (ScheduledBuild build : query.tail(byDueTime)) {
+            if (build.getDueTime() > query.getTo()) {
+                break;
+            }
+            if (query.test(build)) {
+                page.add(build);
+                if (page.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns the pending builds due within a time range, walking back from its end, so that the builds closest to
+     * the end are returned even if the range holds more than {@code limit} of them.
+     * @param from earliest due time in milliseconds since the epoch
+     * @param to latest due time in milliseconds since the epoch
+     * @param limit maximum number of builds to return
+     * @return the matching builds, latest due time first
+     */
+    @NonNull
+    synchronized List<ScheduledBuild> findLatest(long from, long to, int limit) {
+        List<ScheduledBuild> latest = new ArrayList<>(Math.min(limit, byDueTime.size()));
+        // The empty id sorts before every build due at the same time
+        ScheduledBuild end = new ScheduledBuild("", "", to + 1, null, Collections.emptyList());
+        for (ScheduledBuild build : byDueTime.headSet(end, false).descendingSet()) {
+            if (build.getDueTime() < from || latest.size() >= limit) {
+                break;
+            }
+            latest.add(build);
+        }
+        return latest;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Removes and returns all builds due at or before the given time. They are kept in the journal until they are
+     * passed to {@link #fired(Collection)}.
+     * @param time the release horizon in milliseconds since the epoch
+     * @return the removed builds, ordered by due time
+     */
+    @NonNull
+    List<ScheduledBuild> pollDue(long time) {
+        List<ScheduledBuild> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(time, build -> {
+                byId.remove(build.getId());
+                unindex(build);
+                released.put(build.getId(), build);
+                due.add(build);
+            });
+        }
+        due.sort(ScheduledBuild.BY_DUE_TIME);
+        return due;
+    }
+
+    /**
+     * Removes builds taken by {@link #pollDue(long)} from the journal once they were handed to the queue or dropped,
+     * and replaces recurring builds with their next occurrence. The next occurrence is only added now, as it has
+     * the same id as the released one.
+     * @param builds builds returned by {@link #pollDue(long)}
+     */
+    synchronized void fired(@NonNull Collection<ScheduledBuild> builds) {
+        List<ScheduledBuild> fired = new ArrayList<>(builds.size());
+        for (ScheduledBuild build : builds) {
+            // Builds released before the journal was reloaded are pending again, or were replayed as missed
+            if (released.remove(build.getId(), build)) {
+                fired.add(build);
+            }
+        }
+        if (!fired.isEmpty()) {
+            record(ScheduledBuildJournal.FIRE, fired);
+            rescheduleRecurring(fired, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Puts a build taken by {@link #pollDue(long)} back for a later time instead of handing it to the queue.
+     * @param build a build returned by {@link #pollDue(long)}
+     * @param dueTime the new due time in milliseconds since the epoch
+     */
+    synchronized void defer(@NonNull ScheduledBuild build, long dueTime) {
+        if (released.remove(build.getId(), build)) {
+            ScheduledBuild deferred = build.withDueTime(dueTime);
+            add(deferred);
+            record(ScheduledBuildJournal.SCHEDULE, Collections.singletonList(deferred));
+        }
+    }
+
+    /**
+     * Replaces the pending builds with the ones recorded in the journal in {@code directory}, applying the
+     * configured {@link CatchUpPolicy} to builds that became due while Jenkins was not running. A journal that
+     * cannot be read is moved aside and replaced by an empty one.
+     * @param directory the journal directory
+     */
+    synchronized void load(@NonNull File directory) {
+        long started = System.nanoTime();
+        ScheduledBuildJournal replayed = new ScheduledBuildJournal(directory);
+        Map<String, ScheduledBuild> pending;
+        try {
+            pending = replayed.replay();
+        } catch (IOException | RuntimeException e) {
+            // Without a journal nothing scheduled from now on would survive a restart, so start a fresh one
+            LOGGER.log(Level.SEVERE, e, () -> "Failed to replay scheduled builds from " + directory);
+            try {
+                replayed.moveAside(".unreadable-" + System.currentTimeMillis());
+                replayed = new ScheduledBuildJournal(directory);
+                pending = replayed.replay();
+            } catch (IOException | RuntimeException fresh) {
+                LOGGER.log(Level.SEVERE, fresh, () -> "Failed to open a new journal in " + directory);
+                return;
+            }
+        }
+        closeQuietly();
+        for (TimingWheel.Entry<ScheduledBuild> entry : byId.values()) {
+            wheel.cancel(entry);
+        }
+        byId.clear();
+        byDueTime.clear();
+        slots.clear();
+        slotById.clear();
+        coalescible.clear();
+        released.clear();
+        journal = replayed;
+
+        long now = System.currentTimeMillis();
+        List<ScheduledBuild> missed = new ArrayList<>();
+        for (ScheduledBuild build : pending.values()) {
+            if (build.getDueTime() < now) {
+                missed.add(build);
+            }
+        }
+        List<ScheduledBuild> discarded = ScheduleBuildGlobalConfiguration.get().getCatchUpPolicy().discard(missed);
+        for (ScheduledBuild build : discarded) {
+            pending.remove(build.getId());
+        }
+        for (ScheduledBuild build : pending.values()) {
+            add(build);
+        }
+        if (!discarded.isEmpty()) {
+            LOGGER.log(Level.INFO, () -> "Discarded " + discarded.size() + " scheduled builds missed while down");
+            record(ScheduledBuildJournal.CANCEL, discarded);
+            // A discarded occurrence of a recurring build does not end the recurrence
+            rescheduleRecurring(discarded, now);
+        } else {
+            compactIfNeeded();
+        }
+        LOGGER.log(
+                Level.FINE,
+                () -> "Replayed " + byId.size() + " scheduled builds in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms");
+    }
+
+    /**
+     * Finds the first slot of a label within a window that has fewer pending builds than the given capacity.
+     * @param label the label expression of the job, empty if it can run anywhere
+     * @param time the preferred time in milliseconds since the epoch
+     * @param window how far {@code time} may be moved, in milliseconds
+     * @param capacity how many builds a slot can take without overloading the executors
+     * @param reserved builds per slot that are about to be scheduled but are not in the store yet
+     * @param available whether a build may start at a time, slots whose time it may not start at are skipped
+     * @return {@code time} if its slot has room, otherwise the same offset into the first available slot with room,
+     *     or into the least loaded available slot of the window if all of them are full, or {@code time} if none is
+     *     available
+     */
+    synchronized long leastLoadedTime(
+            @NonNull String label,
+            long time,
+            long window,
+            int capacity,
+            @NonNull Map<LoadLeveling.Slot, Integer> reserved,
+            @NonNull LongPredicate available) {
+        LoadLeveling.Slot first = new LoadLeveling.Slot(label, time);
+        LoadLeveling.Slot last = new LoadLeveling.Slot(label, time + window);
+        LoadLeveling.Slot best = first;
+        int bestCount = Integer.MAX_VALUE;
+        for (LoadLeveling.Slot slot = first; slot.getStart() <= last.getStart(); slot = slot.next()) {
+            if (!available.test(time + slot.getStart() - first.getStart())) {
+                continue;
+            }
+            int count = slots.getOrDefault(slot, 0) + reserved.getOrDefault(slot, 0);
+            if (count < capacity) {
+                best = slot;
+                break;
+            }
+            if (count < bestCount) {
+                best = slot;
+                bestCount = count;
+            }
+        }
+        return time + best.getStart() - first.getStart();
+    }
+
+    /**
+     * @param label the label expression, empty for jobs that can run anywhere
+     * @param time a time in milliseconds since the epoch
+     * @return the number of pending builds of jobs with the label in the slot of {@code time}
+     */
+    synchronized int countInSlot(@NonNull String label, long time) {
+        return slots.getOrDefault(new LoadLeveling.Slot(label, time), 0);
+    }
+
+    synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private List<ScheduledBuild> snapshot() {
+        List<ScheduledBuild> pending = new ArrayList<>(byId.size() + released.size());
+        for (TimingWheel.Entry<ScheduledBuild> entry : byId.values()) {
+            pending.add(entry.getPayload());
+        }
+        pending.addAll(released.values());
+        return pending;
+    }
+
+    private void add(ScheduledBuild build) {
+        TimingWheel.Entry<ScheduledBuild> previous = byId.put(build.getId(), wheel.add(build, build.getDueTime()));
+        if (previous != null) {
+            wheel.cancel(previous);
+            unindex(previous.getPayload());
+        }
+        byDueTime.add(build);
+        LoadLeveling.Slot slot = new LoadLeveling.Slot(LoadLeveling.label(build.getJobFullName()), build.getDueTime());
+        slotById.put(build.getId(), slot);
+        slots.merge(slot, 1, Integer::sum);
+        if (coalescingWindow > 0 && build.getRecurrence() == null) {
+            coalescible.putIfAbsent(new CoalescingKey(build, coalescingWindow), build);
+        }
+    }
+
+    private void unindex(ScheduledBuild build) {
+        byDueTime.remove(build);
+        LoadLeveling.Slot slot = slotById.remove(build.getId());
+        if (slot != null) {
+            slots.computeIfPresent(slot, (key, count) -> count == 1 ? null : count - 1);
+        }
+        if (coalescingWindow > 0 && build.getRecurrence() == null) {
+            coalescible.remove(new CoalescingKey(build, coalescingWindow), build);
+        }
+    }
+
+    /**
+     * Finds the pending build {@code build} duplicates. A duplicate due within the window is in the bucket of
+     * {@code build} or in one of its neighbours.
+     */
+    @CheckForNull
+    private ScheduledBuild findCoalescible(ScheduledBuild build) {
+        if (coalescingWindow == 0 || build.getRecurrence() != null) {
+            return null;
+        }
+        CoalescingKey key = new CoalescingKey(build, coalescingWindow);
+        for (long bucket = key.bucket - 1; bucket <= key.bucket + 1; bucket++) {
+            ScheduledBuild candidate = coalescible.get(key.withBucket(bucket));
+            if (candidate != null && Math.abs(candidate.getDueTime() - build.getDueTime()) <= coalescingWindow) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void reindexCoalescible(long window) {
+        coalescible.clear();
+        coalescingWindow = window;
+        if (window > 0) {
+            for (ScheduledBuild build : byDueTime) {
+                if (build.getRecurrence() == null) {
+                    coalescible.putIfAbsent(new CoalescingKey(build, window), build);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the next occurrence of every recurring build in {@code builds} that is later than {@code now}.
+     */
+    private void rescheduleRecurring(Collection<ScheduledBuild> builds, long now) {
+        List<ScheduledBuild> next = new ArrayList<>();
+        for (ScheduledBuild build : builds) {
+            ScheduledBuild occurrence = outOfBlackout(build.next(now));
+            if (occurrence != null) {
+                add(occurrence);
+                next.add(occurrence);
+                LOGGER.log(Level.FINE, () -> "Scheduled next occurrence " + occurrence);
+            }
+        }
+        if (!next.isEmpty()) {
+            record(ScheduledBuildJournal.SCHEDULE, next);
+        }
+    }
+
+    /**
+     * Applies the blackout policy to an occurrence of a recurring build: an occurrence in a window is moved to its
+     * end, or skipped for the first occurrence after it if such build times are rejected.
+     * @return the occurrence to schedule, or {@code null} if the build does not recur anymore
+     */
+    @CheckForNull
+    private static ScheduledBuild outOfBlackout(@CheckForNull ScheduledBuild occurrence) {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        for (int skipped = 0; occurrence != null && skipped < MAX_SKIPPED_WINDOWS; skipped++) {
+            long end = config.getBlackoutEnd(occurrence.getDueTime());
+            if (end == occurrence.getDueTime()) {
+                return occurrence;
+            }
+            if (config.getBlackoutPolicy() == BlackoutPolicy.MOVE_TO_END) {
+                return occurrence.withDueTime(end);
+            }
+            ScheduledBuild blackedOut = occurrence;
+            occurrence = occurrence.next(end - 1);
+            LOGGER.log(Level.FINE, () -> "Skipped occurrence in a blackout window " + blackedOut);
+        }
+        // Windows that keep covering the occurrences leave the last one to be dropped when it is released
+        return occurrence;
+    }
+
+    private void record(byte type, Collection<ScheduledBuild> builds) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (type == ScheduledBuildJournal.SCHEDULE) {
+                journal.scheduled(builds);
+            } else {
+                journal.removed(type, builds);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to record scheduled builds in the journal", e);
+        }
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        if (journal == null
+                || journal.getRecordCount() < ScheduleBuildGlobalConfiguration.get().getJournalCompactionThreshold()) {
+            return;
+        }
+        try {
+            journal.compact(snapshot());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact the scheduled build journal", e);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close journal", e);
+        }
+    }
+
+    /**
+     * Job, parameters and coalescing window bucket of a one-shot build.
+     */
+    private static final class CoalescingKey {
+        private final String job;
+        private final List<ParameterValue> parameters;
+        private final long bucket;
+        private final int hash;
+
+        CoalescingKey(ScheduledBuild build, long window) {
+            this(build.getJobFullName(), build.getParameters(), Math.floorDiv(build.getDueTime(), window));
+        }
+
+        private CoalescingKey(String job, List<ParameterValue> parameters, long bucket) {
+            this.job = job;
+            this.parameters = parameters;
+            this.bucket = bucket;
+            this.hash = Objects.hash(job, parameters, bucket);
+        }
+
+        CoalescingKey withBucket(long bucket) {
+            return bucket == this.bucket ? this : new CoalescingKey(job, parameters, bucket);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CoalescingKey)) {
+                return false;
+            }
+            CoalescingKey other = (CoalescingKey) o;
+            return hash == other.hash
+                    && bucket == other.bucket
+                    && job.equals(other.job)
+                    && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Attached to queue items released by {@link ScheduledBuildReleaser}, so that {@link ScheduledBuildMetrics} can
+ * tell how late the build became buildable and started compared to the requested time.
+ * Removed from the build once it started.
+ */
+public class ScheduledBuildTiming extends InvisibleAction {
+
+    private final long requestedTime;
+
+    private volatile long buildableTime;
+
+    ScheduledBuildTiming(long requestedTime) {
+        this.requestedTime = requestedTime;
+    }
+
+    /**
+     * @return the time the build was scheduled for, in milliseconds since the epoch
+     */
+    public long getRequestedTime() {
+        return requestedTime;
+    }
+
+    /**
+     * @return the time the queue item first became buildable, in milliseconds since the epoch, or {@code 0}
+     */
+    public long getBuildableTime() {
+        return buildableTime;
+    }
+
+    void buildable(long time) {
+        if (buildableTime == 0) {
+            buildableTime = time;
+        }
+    }
+}
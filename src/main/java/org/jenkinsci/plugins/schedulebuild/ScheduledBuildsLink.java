@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Failure;
+import hudson.model.Job;
+import hudson.model.ManagementLink;
+import hudson.security.Permission;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.Stapler;
+
+/**
+ * Lists all pending scheduled builds in due time order, one page at a time.
+ */
+@Extension
+public class ScheduledBuildsLink extends ManagementLink {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-calendar-outline plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.ScheduledBuildsLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.ScheduledBuildsLink_Description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "scheduled-builds";
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    @NonNull
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.SYSTEM_READ;
+    }
+
+    /**
+     * @return the query of the current request
+     * @throws Failure if a filter is not valid
+     */
+    @Restricted(NoExternalUse.class)
+    public ScheduledBuildQuery getQuery() {
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+        try {
+            return ScheduledBuildQuery.fromRequest(Stapler.getCurrentRequest2());
+        } catch (IllegalArgumentException e) {
+            throw new Failure(e.getMessage());
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public int getLimit() {
+        try {
+            return ScheduledBuildQuery.limit(Stapler.getCurrentRequest2());
+        } catch (NumberFormatException e) {
+            return ScheduledBuildQuery.DEFAULT_LIMIT;
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public List<ScheduledBuild> find(ScheduledBuildQuery query, int limit) {
+        return ScheduledBuildStore.get().find(query, limit);
+    }
+
+    @CheckForNull
+    @Restricted(NoExternalUse.class)
+    public Job<?, ?> getJob(String fullName) {
+        return Jenkins.get().getItemByFullName(fullName, Job.class);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public String formatTime(long time) {
+        return Instant.ofEpochMilli(time)
+                .atZone(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .format(DATE_TIME_FORMATTER);
+    }
+}
@@ -0,0 +1,209 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+
+/**
+ * Estimates when a build scheduled for a given time will actually start, and when it will end.
+ * <p>
+ * The executors that can run the job are simulated up to the requested time. Running builds free their executor
+ * after their estimated remaining time. Builds of the same label waiting in the queue, held by the release rate
+ * limits or pending in the {@link ScheduledBuildStore} take the first free executor in due time order, and keep it
+ * for the average duration of their job. Pending builds are only looked at within {@link #LOOKBACK} of the
+ * requested time, and at most {@link #MAX_BUILDS} of them.
+ * <p>
+ * Durations are an exponentially weighted moving average per job. Completed builds update them, and each job's
+ * average is seeded once from {@link Job#getEstimatedDuration()}, so a prediction does not load build history.
+ * The average of a renamed job moves with it, and the average of a deleted job is dropped.
+ */
+@Extension
+public class StartTimePredictor {
+
+    /** How long before the requested time a pending build may still occupy an executor. */
+    static final long LOOKBACK = TimeUnit.HOURS.toMillis(12);
+
+    /** Maximum number of pending builds simulated for one prediction. */
+    static final int MAX_BUILDS = 1000;
+
+    /** A completed build moves the average duration of its job by this fraction of the difference. */
+    private static final int WEIGHT = 4;
+
+    /** Average duration per job full name in milliseconds, -1 for jobs without a successful build. */
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    public static StartTimePredictor get() {
+        return ExtensionList.lookupSingleton(StartTimePredictor.class);
+    }
+
+    /**
+     * @return average duration of the successful and unstable builds of the job in milliseconds, or -1 if it has
+     *     none
+     */
+    long getDuration(@NonNull Job<?, ?> job) {
+        Long duration = durations.get(job.getFullName());
+        if (duration == null) {
+            // Reads build history once per job, a build completing in the meantime wins
+            duration = durations.merge(job.getFullName(), job.getEstimatedDuration(), (recorded, seed) -> recorded);
+        }
+        return duration;
+    }
+
+    void record(@NonNull String job, long duration) {
+        durations.merge(
+                job, duration, (average, latest) -> average < 0 ? latest : average + (latest - average) / WEIGHT);
+    }
+
+    /**
+     * Drops the average durations of a deleted item, and of the jobs within it if it is a folder.
+     * @param fullName full name of the item
+     */
+    void remove(@NonNull String fullName) {
+        String prefix = fullName + '/';
+        durations.keySet().removeIf(job -> job.equals(fullName) || job.startsWith(prefix));
+    }
+
+    /**
+     * Moves the average duration of a renamed or moved job to its new name.
+     * @param oldFullName full name of the job before
+     * @param newFullName full name of the job after
+     */
+    void rename(@NonNull String oldFullName, @NonNull String newFullName) {
+        Long duration = durations.remove(oldFullName);
+        if (duration != null) {
+            durations.put(newFullName, duration);
+        }
+    }
+
+    /**
+     * @param job the job to build
+     * @param time the requested time in milliseconds since the epoch
+     * @param now the current time in milliseconds since the epoch
+     * @return the estimated start and end of the build, or {@code null} if no executor that can run it is online
+     */
+    @CheckForNull
+    Prediction predict(@NonNull Job<?, ?> job, long time, long now) {
+        String expression = LoadLeveling.label(job);
+        int capacity = 0;
+        // Times at which the executors become free, the earliest first
+        PriorityQueue<Long> free = new PriorityQueue<>();
+        for (Computer computer : LoadLeveling.computers(job)) {
+            if (computer.isOnline()) {
+                capacity += computer.countExecutors();
+                for (Executor executor : computer.getExecutors()) {
+                    if (executor.isBusy()) {
+                        free.add(now + Math.max(0, executor.getEstimatedRemainingTimeMillis()));
+                    }
+                }
+            }
+        }
+        if (capacity == 0) {
+            return null;
+        }
+        while (free.size() < capacity) {
+            free.add(Long.MIN_VALUE);
+        }
+
+        // Due time and duration of every build ahead of this one
+        List<long[]> ahead = new ArrayList<>();
+        for (Queue.Item item : Jenkins.get().getQueue().getItems()) {
+            long due = item instanceof Queue.WaitingItem ? ((Queue.WaitingItem) item).timestamp.getTimeInMillis() : now;
+            if (due <= time && expression.equals(expression(item.getAssignedLabel()))) {
+                long duration = item.task instanceof Job
+                        ? getDuration((Job<?, ?>) item.task)
+                        : item.task.getEstimatedDuration();
+                ahead.add(new long[] {due, duration});
+            }
+        }
+        Map<String, Job<?, ?>> jobs = new HashMap<>();
+        List<ScheduledBuild> pending =
+                ScheduledBuildStore.get().findLatest(Math.max(now, time - LOOKBACK), time, MAX_BUILDS);
+        pending.addAll(ExtensionList.lookupSingleton(ScheduledBuildReleaser.class).getHeldBuilds());
+        for (ScheduledBuild build : pending) {
+            if (build.getDueTime() > time) {
+                continue;
+            }
+            Job<?, ?> other = jobs.computeIfAbsent(
+                    build.getJobFullName(), name -> Jenkins.get().getItemByFullName(name, Job.class));
+            if (other != null && expression.equals(LoadLeveling.label(other))) {
+                ahead.add(new long[] {build.getDueTime(), getDuration(other)});
+            }
+        }
+        ahead.sort(Comparator.comparingLong(build -> build[0]));
+
+        for (long[] build : ahead) {
+            long start = Math.max(build[0], free.poll());
+            // A build of a job without history takes its executor for no time, the estimate stays optimistic
+            free.add(start + Math.max(0, build[1]));
+        }
+        long start = Math.max(time, free.poll());
+        long duration = getDuration(job);
+        return new Prediction(start, duration < 0 ? -1 : start + duration);
+    }
+
+    private static String expression(@CheckForNull Label label) {
+        return label == null ? "" : label.getExpression();
+    }
+
+    /**
+     * Estimated start and end of a build.
+     */
+    static final class Prediction {
+        /** Estimated start in milliseconds since the epoch. */
+        final long start;
+        /** Estimated end in milliseconds since the epoch, -1 if the job has no build to estimate it from. */
+        final long end;
+
+        Prediction(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    @Extension
+    public static class JobListener extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            get().remove(item.getFullName());
+        }
+
+        // Also called for every job within a renamed or moved folder
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().rename(oldFullName, newFullName);
+        }
+    }
+
+    @Extension
+    public static class DurationListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            Result result = run.getResult();
+            // Like Job#getEstimatedDuration, failed and aborted builds say little about how long a build takes
+            if (result != null && result.isBetterOrEqualTo(Result.UNSTABLE)) {
+                get().record(run.getParent().getFullName(), run.getDuration());
+            }
+        }
+    }
+}
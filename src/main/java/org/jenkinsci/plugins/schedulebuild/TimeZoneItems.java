@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ListBoxModel;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The options of the time zone select box of {@link ScheduleBuildGlobalConfiguration}.
+ * <p>
+ * The available zone ids do not change while the JVM runs, so they are sorted once and every zone gets an option
+ * and a selected variant of it up front. A fill request only copies references into a new {@link ListBoxModel},
+ * taking the selected variant for the configured zone. The cached options are shared between models and must not
+ * be modified.
+ */
+final class TimeZoneItems {
+
+    private static final class Holder {
+        static final TimeZoneItems INSTANCE = new TimeZoneItems(ZoneId.getAvailableZoneIds());
+    }
+
+    private final ListBoxModel.Option[] options;
+    private final ListBoxModel.Option[] selectedOptions;
+
+    /** Index in {@link #options}, looked up ignoring case like the configured time zone always was. */
+    private final Map<String, Integer> indexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    TimeZoneItems(@NonNull Collection<String> zoneIds) {
+        String[] ids = new TreeSet<>(zoneIds).toArray(new String[0]);
+        options = new ListBoxModel.Option[ids.length];
+        selectedOptions = new ListBoxModel.Option[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            options[i] = new ListBoxModel.Option(ids[i], ids[i], false);
+            selectedOptions[i] = new ListBoxModel.Option(ids[i], ids[i], true);
+            indexes.putIfAbsent(ids[i], i);
+        }
+    }
+
+    static TimeZoneItems get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param selected the configured time zone
+     * @return the options of all zones, with {@code selected} marked
+     */
+    @NonNull
+    ListBoxModel model(@CheckForNull String selected) {
+        Integer index = selected == null ? null : indexes.get(selected);
+        ListBoxModel model = new ListBoxModel(options.length);
+        for (int i = 0; i < options.length; i++) {
+            model.add(index != null && i == index ? selectedOptions[i] : options[i]);
+        }
+        return model;
+    }
+
+    int size() {
+        return options.length;
+    }
+}
@@ -0,0 +1,235 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding payloads until their deadline has passed.
+ * <p>
+ * Level {@code n} of the wheel has {@code 2^bits} slots, each covering {@code 2^(bits*n)} ticks. Entries are
+ * linked into the slot of the lowest level that can represent their distance from the current tick, and are
+ * cascaded down to finer levels as time advances. Inserting and cancelling an entry is O(1); advancing the wheel
+ * costs one step per elapsed tick plus the number of entries moved or expired.
+ * <p>
+ * The wheel does not own a thread. It is driven by calls to {@link #advance(long, Consumer)} and is not thread
+ * safe; callers are expected to guard it with their own lock.
+ *
+ * @param <T> type of the payload
+ */
+final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final List<Entry<T>[]> levels = new ArrayList<>();
+
+    /** Last tick that has been processed; entries due at or before it have already expired. */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param tickMillis resolution of the wheel in milliseconds
+     * @param bits number of bits per level, each level has {@code 2^bits} slots
+     * @param startTime time the wheel starts at, in milliseconds since the epoch
+     */
+    TimingWheel(long tickMillis, int bits, long startTime) {
+        if (tickMillis <= 0 || bits <= 0 || bits > 16) {
+            throw new IllegalArgumentException("tickMillis=" + tickMillis + ", bits=" + bits);
+        }
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.currentTick = Math.floorDiv(startTime, tickMillis);
+    }
+
+    /**
+     * Adds a payload that expires once the wheel has been advanced to or past {@code deadline}.
+     * Payloads with a deadline in the past expire on the next call to {@link #advance(long, Consumer)}.
+     * @param payload the payload
+     * @param deadline expiry time in milliseconds since the epoch
+     * @return handle that can be used to {@link #cancel(Entry) cancel} the entry
+     */
+    @NonNull
+    Entry<T> add(@NonNull T payload, long deadline) {
+        Entry<T> entry = new Entry<>(payload, deadline);
+        long tick = Math.floorDiv(deadline, tickMillis);
+        if (Math.floorMod(deadline, tickMillis) != 0) {
+            tick++;
+        }
+        link(entry, Math.max(tick, currentTick + 1));
+        size++;
+        return entry;
+    }
+
+    /**
+     * Removes an entry from the wheel.
+     * @param entry the entry
+     * @return {@code true} if the entry was pending, {@code false} if it had already expired or been cancelled
+     */
+    boolean cancel(@NonNull Entry<T> entry) {
+        if (entry.slot < 0) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel, handing every payload whose deadline is at or before {@code time} to {@code expired}.
+     * Advancing to a time earlier than a previous call is a no-op.
+     * @param time the time to advance to, in milliseconds since the epoch
+     * @param expired receives expired payloads, in tick order
+     */
+    void advance(long time, @NonNull Consumer<? super T> expired) {
+        long target = Math.floorDiv(time, tickMillis);
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target;
+                return;
+            }
+            currentTick++;
+            cascade();
+            Entry<T>[] wheel = levels.get(0);
+            int slot = (int) (currentTick & mask);
+            Entry<T> entry = wheel[slot];
+            wheel[slot] = null;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                entry.next = null;
+                entry.prev = null;
+                entry.slot = -1;
+                size--;
+                expired.accept(entry.payload);
+                entry = next;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return number of pending entries linked into each level, the finest level first
+     */
+    int[] getEntriesPerLevel() {
+        int[] entries = new int[levels.size()];
+        for (int level = 0; level < entries.length; level++) {
+            for (Entry<T> entry : levels.get(level)) {
+                for (; entry != null; entry = entry.next) {
+                    entries[level]++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return number of slots allocated over all levels
+     */
+    int getSlotCount() {
+        return levels.size() << bits;
+    }
+
+    /**
+     * Moves the entries of every higher level slot whose range starts at the current tick down the hierarchy.
+     */
+    private void cascade() {
+        if ((currentTick & mask) != 0) {
+            return;
+        }
+        for (int level = levels.size() - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (bits * level)) - 1)) != 0) {
+                continue;
+            }
+            Entry<T>[] wheel = levels.get(level);
+            int slot = (int) ((currentTick >>> (bits * level)) & mask);
+            Entry<T> entry = wheel[slot];
+            wheel[slot] = null;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                entry.next = null;
+                entry.prev = null;
+                link(entry, entry.tick);
+                entry = next;
+            }
+        }
+    }
+
+    private void link(Entry<T> entry, long tick) {
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < 63 / bits && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (bits * level)) & mask);
+        Entry<T>[] wheel = level(level);
+        entry.tick = tick;
+        entry.level = level;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = wheel[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            levels.get(entry.level)[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T>[] level(int level) {
+        while (levels.size() <= level) {
+            levels.add(new Entry[1 << bits]);
+        }
+        return levels.get(level);
+    }
+
+    /**
+     * Handle on a payload held by the wheel.
+     * @param <T> type of the payload
+     */
+    static final class Entry<T> {
+        private final T payload;
+        private final long deadline;
+        private long tick;
+        private int level;
+        private int slot = -1;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T payload, long deadline) {
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        @NonNull
+        T getPayload() {
+            return payload;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+    }
+}
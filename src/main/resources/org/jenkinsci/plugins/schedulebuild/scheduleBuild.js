@@ -1,7 +1,72 @@
+// Mirrors ScheduleTimeParser: "d-M-y H:m[:s]" and "d-M-y h:m[:s] a"
+const SCHEDULE_BUILD_DATE = /^(\d+)-(\d+)-(\d+) (\d+):(\d+)(?::(\d+))?(?: (AM|PM))?$/;
+// Mirrors ScheduleBuildAction.SECURITY_MARGIN
+const SCHEDULE_BUILD_SECURITY_MARGIN = 120 * 1000;
+const SCHEDULE_BUILD_CHECK_DELAY = 500;
+
+// Returns the entered wall clock time as milliseconds, or null if it is not in one of the accepted formats
+function scheduleBuildParse(value) {
+  const match = SCHEDULE_BUILD_DATE.exec(value.trim().toUpperCase());
+  if (!match) {
+    return null;
+  }
+  // The seconds are optional
+  const [day, month, year, hour, minute, second] = match.slice(1, 7).map(part => Number(part || 0));
+  const marker = match[7];
+  let h = hour;
+  if (marker) {
+    // Like the server, 0 is accepted as a clock hour of am/pm
+    if (h > 12) {
+      return null;
+    }
+    h = (h % 12) + (marker === "PM" ? 12 : 0);
+  } else if (h > 23 && !(h === 24 && minute === 0 && second === 0)) {
+    // 24:00 is midnight at the end of the day
+    return null;
+  }
+  if (day < 1 || day > 31 || month < 1 || month > 12 || year < 1 || minute > 59 || second > 59) {
+    return null;
+  }
+  const date = new Date(0);
+  // Day 0 of the next month is the last day of this one, later days are clamped to it like on the server
+  date.setUTCFullYear(year, month, 0);
+  date.setUTCFullYear(year, month - 1, Math.min(day, date.getUTCDate()));
+  date.setUTCHours(h, minute, second, 0);
+  return date.getTime();
+}
+
 Behaviour.specify("#schedule-build-input", "schedule-build-input", 0, function(input) {
-  input.onkeyup = function(event) {
-    input.onchange();
+  const container = document.getElementById("schedule-build-flatpickr");
+  const message = document.getElementById("schedule-build-client-validation");
+  // data-now is the server's current time in the configured time zone when the page was rendered
+  const renderedAt = Date.now();
+  const serverNow = scheduleBuildParse(container.dataset.now);
+  let timer = null;
+
+  function showError(text) {
+    message.textContent = text;
+    message.classList.toggle("jenkins-hidden", !text);
   }
+
+  input.addEventListener("keyup", function() {
+    clearTimeout(timer);
+    const time = scheduleBuildParse(input.value);
+    if (time === null) {
+      showError(message.dataset.parsingError);
+      return;
+    }
+    if (serverNow !== null && time + SCHEDULE_BUILD_SECURITY_MARGIN < serverNow + (Date.now() - renderedAt)) {
+      showError(message.dataset.dateInPastError);
+      return;
+    }
+    showError("");
+    // Only well-formed dates reach the server, and only once the user stopped typing
+    timer = setTimeout(function() {
+      if (typeof input.onchange === "function") {
+        input.onchange();
+      }
+    }, SCHEDULE_BUILD_CHECK_DELAY);
+  });
 });
 
 let fp = document.getElementById("schedule-build-flatpickr");
@@ -16,4 +81,3 @@ flatpickr(fp, {
   positionElement: fp.querySelector("button"),
   minDate: fp.dataset.now,
 })
-
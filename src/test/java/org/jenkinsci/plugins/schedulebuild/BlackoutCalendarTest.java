@@ -0,0 +1,124 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BlackoutCalendarTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(BERLIN).toInstant().toEpochMilli();
+    }
+
+    private static BlackoutWindow window(String start, int duration, String repeat) {
+        BlackoutWindow window = new BlackoutWindow(start, duration);
+        window.setRepeat(repeat);
+        return window;
+    }
+
+    private static BlackoutCalendar calendar(List<BlackoutWindow> windows, long from) {
+        return BlackoutCalendar.build(windows, BERLIN, from, from + BlackoutCalendar.HORIZON);
+    }
+
+    @Test
+    void oneOffWindowIsHalfOpen() {
+        BlackoutCalendar calendar = calendar(List.of(window("01-03-2025 02:00:00", 60, "")), at(2025, 2, 20, 0, 0));
+
+        assertThat(calendar.endOf(at(2025, 3, 1, 1, 59)), is(at(2025, 3, 1, 1, 59)));
+        assertThat(calendar.endOf(at(2025, 3, 1, 2, 0)), is(at(2025, 3, 1, 3, 0)));
+        assertThat(calendar.endOf(at(2025, 3, 1, 2, 59)), is(at(2025, 3, 1, 3, 0)));
+        assertThat(calendar.endOf(at(2025, 3, 1, 3, 0)), is(at(2025, 3, 1, 3, 0)));
+    }
+
+    @Test
+    void weeklyWindowKeepsTheWallClockTimeAcrossDaylightSavingTime() {
+        // Sundays from 01:00 to 05:00, daylight saving time starts on 30-03-2025
+        BlackoutCalendar calendar =
+                calendar(List.of(window("02-03-2025 01:00:00", 240, "WEEKS")), at(2025, 3, 20, 0, 0));
+
+        assertThat(calendar.endOf(at(2025, 3, 23, 4, 0)), is(at(2025, 3, 23, 5, 0)));
+        assertThat(calendar.endOf(at(2025, 3, 30, 1, 30)), is(at(2025, 3, 30, 1, 0) + TimeUnit.MINUTES.toMillis(240)));
+        assertThat(calendar.endOf(at(2025, 4, 6, 0, 59)), is(at(2025, 4, 6, 0, 59)));
+        assertThat(calendar.endOf(at(2025, 4, 6, 1, 0)), is(at(2025, 4, 6, 5, 0)));
+        assertThat(calendar.size(), is(4));
+    }
+
+    @Test
+    void occurrenceStartedBeforeTheRangeIsIncluded() {
+        BlackoutCalendar calendar =
+                calendar(List.of(window("01-03-2025 22:00:00", 480, "DAYS")), at(2025, 3, 10, 1, 0));
+
+        assertThat(calendar.endOf(at(2025, 3, 10, 1, 0)), is(at(2025, 3, 10, 6, 0)));
+    }
+
+    @Test
+    void overlappingAndAdjacentWindowsAreMerged() {
+        BlackoutCalendar calendar = calendar(
+                List.of(
+                        window("01-03-2025 02:00:00", 60, ""),
+                        window("01-03-2025 02:30:00", 60, ""),
+                        window("01-03-2025 03:30:00", 30, ""),
+                        window("01-03-2025 05:00:00", 30, "")),
+                at(2025, 2, 20, 0, 0));
+
+        assertThat(calendar.size(), is(2));
+        assertThat(calendar.endOf(at(2025, 3, 1, 2, 15)), is(at(2025, 3, 1, 4, 0)));
+        assertThat(calendar.endOf(at(2025, 3, 1, 4, 30)), is(at(2025, 3, 1, 4, 30)));
+    }
+
+    @Test
+    void invalidStartIsIgnored() {
+        BlackoutWindow invalid = new BlackoutWindow("next sunday", 60);
+
+        assertThat(invalid.getStart(), is("next sunday"));
+        assertThat(calendar(List.of(invalid), at(2025, 3, 1, 0, 0)).size(), is(0));
+    }
+
+    @Test
+    void lookupMatchesALinearScanOverManyWindows() {
+        List<BlackoutWindow> windows = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String start = String.format("%02d-03-2025 %02d:%02d:00", 1 + i % 28, i % 24, (i * 7) % 60);
+            windows.add(window(start, 5 + i % 90, i % 3 == 0 ? "DAYS" : i % 3 == 1 ? "WEEKS" : ""));
+        }
+        long from = at(2025, 3, 15, 0, 0);
+        BlackoutCalendar calendar = calendar(windows, from);
+
+        for (long time = from; time < from + TimeUnit.DAYS.toMillis(7); time += TimeUnit.MINUTES.toMillis(13)) {
+            assertThat(calendar.endOf(time), is(linearEnd(windows, time)));
+        }
+    }
+
+    /** The end of the window chain containing the time, found by checking every occurrence of every window. */
+    private static long linearEnd(List<BlackoutWindow> windows, long time) {
+        long end = time;
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            for (BlackoutWindow window : windows) {
+                long start = window.getStartTime().atZone(BERLIN).toInstant().toEpochMilli();
+                RecurrenceUnit unit = window.getRepeatUnit();
+                for (int i = 0; start <= end; i++) {
+                    long occurrence = unit == null ? start : unit.add(start, BERLIN, i);
+                    if (occurrence > end || (unit == null && i > 0)) {
+                        break;
+                    }
+                    long occurrenceEnd = occurrence + window.getDurationMillis();
+                    if (occurrence <= end && end < occurrenceEnd) {
+                        end = occurrenceEnd;
+                        moved = true;
+                    }
+                }
+            }
+        }
+        return end;
+    }
+}
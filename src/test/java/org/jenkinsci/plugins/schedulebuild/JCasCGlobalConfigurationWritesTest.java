@@ -0,0 +1,71 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import io.jenkins.plugins.casc.ConfigurationAsCode;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class JCasCGlobalConfigurationWritesTest {
+
+    private static final AtomicInteger WRITES = new AtomicInteger();
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+        WRITES.set(0);
+    }
+
+    @Test
+    void applyingConfigurationWritesOnce() throws Exception {
+        configure("scheduleBuild-new-fields.yaml");
+        assertThat(ScheduleBuildGlobalConfiguration.get().getTimeZone(), is("Europe/Berlin"));
+        assertThat(WRITES.get(), is(1));
+
+        configure("scheduleBuild-new-fields.yaml");
+        assertThat(WRITES.get(), is(1));
+    }
+
+    @Test
+    void legacyFieldsAreWrittenOnce() throws Exception {
+        configure("scheduleBuild-old-fields.yaml");
+        assertThat(ScheduleBuildGlobalConfiguration.get().getDefaultStartTime(), is("00:34:56"));
+        assertThat(WRITES.get(), is(1));
+    }
+
+    @Test
+    void unchangedFormSubmissionDoesNotWrite() throws Exception {
+        j.configRoundtrip();
+        assertThat(WRITES.get(), is(0));
+
+        ScheduleBuildGlobalConfiguration.get().setTimeZone("Europe/Rome");
+        assertThat(WRITES.get(), is(1));
+        j.configRoundtrip();
+        assertThat(WRITES.get(), is(1));
+    }
+
+    private void configure(String resource) throws Exception {
+        ConfigurationAsCode.get().configure(getClass().getResource(resource).toExternalForm());
+    }
+
+    @TestExtension
+    public static class WriteCounter extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof ScheduleBuildGlobalConfiguration) {
+                WRITES.incrementAndGet();
+            }
+        }
+    }
+}
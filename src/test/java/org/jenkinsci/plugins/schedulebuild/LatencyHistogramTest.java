@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000);
+        }
+        histogram.record(-10);
+
+        assertThat(histogram.getCount(), is(101L));
+        assertThat(histogram.getMax(), is(5000L));
+        assertThat(histogram.getPercentile(0.5), is(127L));
+        assertThat(histogram.getPercentile(0.99), is(5000L));
+        assertThat(histogram.getPercentile(0), is(0L));
+    }
+
+    @Test
+    void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        JSONObject json = histogram.toJSON();
+        assertThat(json.getLong("count"), is(0L));
+        assertThat(json.getLong("p95"), is(0L));
+        assertThat(json.getJSONArray("buckets").size(), is(0));
+    }
+
+    @Test
+    void concurrentRecordingLosesNothing() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(histogram.getCount(), is(400_000L));
+        assertThat(histogram.getMax(), is(99_999L));
+    }
+}
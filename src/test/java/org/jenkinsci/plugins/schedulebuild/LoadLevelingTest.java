@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleProject;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class LoadLevelingTest {
+
+    private static final long MINUTE = LoadLeveling.SLOT_MILLIS;
+
+    private FreeStyleProject project;
+    private ScheduleBuildGlobalConfiguration config;
+    private ZonedDateTime time;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) throws Exception {
+        j.jenkins.setNumExecutors(2);
+        project = j.createFreeStyleProject("job");
+        config = ScheduleBuildGlobalConfiguration.get();
+        time = ZonedDateTime.now().plusDays(1).truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    @Test
+    void capacityIsTheNumberOfExecutors() {
+        assertThat(LoadLeveling.capacity(project), is(2));
+    }
+
+    @Test
+    void spreadMovesBuildsPastFullMinutes() {
+        config.setLevelingMode(LevelingMode.SPREAD);
+        config.setLevelingWindow(300);
+        long t = time.toInstant().toEpochMilli();
+
+        assertThat(schedule(5), contains(t, t, t + MINUTE, t + MINUTE, t + 2 * MINUTE));
+        assertThat(LoadLeveling.apply(project, t), is(t + 2 * MINUTE));
+    }
+
+    @Test
+    void slotsAreCountedPerLabel(JenkinsRule j) throws Exception {
+        config.setLevelingMode(LevelingMode.SPREAD);
+        config.setLevelingWindow(300);
+        FreeStyleProject labeled = j.createFreeStyleProject("labeled");
+        labeled.setAssignedLabel(j.jenkins.getLabel("linux"));
+        long t = time.toInstant().toEpochMilli();
+
+        assertThat(schedule(2), contains(t, t));
+        assertThat(ScheduledBuildStore.get().countInSlot("", t), is(2));
+        assertThat(ScheduledBuildStore.get().countInSlot("linux", t), is(0));
+        assertThat(LoadLeveling.apply(labeled, t), is(t));
+        assertThat(LoadLeveling.apply(project, t), is(t + MINUTE));
+    }
+
+    @Test
+    void fullWindowUsesLeastLoadedMinute() {
+        config.setLevelingMode(LevelingMode.SPREAD);
+        config.setLevelingWindow(60);
+        long t = time.toInstant().toEpochMilli();
+
+        assertThat(schedule(5), contains(t, t, t + MINUTE, t + MINUTE, t));
+    }
+
+    @Test
+    void spreadSkipsBlackoutWindows() {
+        config.setLevelingMode(LevelingMode.SPREAD);
+        config.setLevelingWindow(300);
+        long t = time.toInstant().toEpochMilli();
+        String start = config.formatDateTime(t + MINUTE);
+        config.setBlackoutWindows(List.of(new BlackoutWindow(start, 2)));
+
+        assertThat(schedule(5), contains(t, t, t + 3 * MINUTE, t + 3 * MINUTE, t + 4 * MINUTE));
+    }
+
+    @Test
+    void suggestOnlyChangesTheProposedTime() {
+        config.setDefaultStartTime(time.withZoneSameInstant(config.getZoneId()).toLocalTime().toString());
+        ScheduleBuildAction action = new ScheduleBuildAction(project);
+        long t = action.getDefaultDateObject().toInstant().toEpochMilli();
+        schedule(t, 2);
+
+        assertThat(action.getDefaultDateObject().toInstant().toEpochMilli(), is(t));
+        config.setLevelingMode(LevelingMode.SUGGEST);
+        assertThat(action.getDefaultDateObject().toInstant().toEpochMilli(), is(t + MINUTE));
+        assertThat(LoadLeveling.apply(project, t), is(t));
+    }
+
+    private List<Long> schedule(int count) {
+        return schedule(time.toInstant().toEpochMilli(), count);
+    }
+
+    /**
+     * Schedules {@code count} builds for {@code t} through the REST API.
+     * @return the due times of the scheduled builds
+     */
+    private List<Long> schedule(long t, int count) {
+        String text = ZonedDateTime.ofInstant(Instant.ofEpochMilli(t), config.getZoneId())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            items.add(new JSONObject().element("job", project.getFullName()).element("time", text));
+        }
+        JSONArray results =
+                ExtensionList.lookupSingleton(ScheduleBuildApi.class).scheduleAll(items, System.currentTimeMillis());
+        List<Long> due = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            ScheduledBuild build = ScheduledBuildStore.get().getById(results.getJSONObject(i).getString("id"));
+            due.add(build.getDueTime());
+        }
+        return due;
+    }
+}
@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RecurrenceTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    private static long at(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).atZone(BERLIN).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void daysKeepTheWallClockTimeAcrossDaylightSavingTime() {
+        Recurrence daily = new Recurrence(RecurrenceUnit.DAYS, 1, at(2025, 3, 29, 22), BERLIN, Recurrence.FOREVER, 0);
+        assertThat(daily.getTime(1), is(at(2025, 3, 30, 22)));
+        assertThat(daily.getTime(1) - daily.getTime(0), is(TimeUnit.HOURS.toMillis(23)));
+        assertThat(daily.getTime(220), is(at(2025, 11, 4, 22)));
+    }
+
+    @Test
+    void hoursAreFixedDurations() {
+        Recurrence hourly = new Recurrence(RecurrenceUnit.HOURS, 6, at(2025, 3, 29, 22), BERLIN, Recurrence.FOREVER, 0);
+        assertThat(hourly.getTime(1), is(at(2025, 3, 30, 5)));
+    }
+
+    @Test
+    void nextSkipsMissedOccurrences() {
+        long start = at(2025, 1, 6, 8);
+        Recurrence weekly = new Recurrence(RecurrenceUnit.WEEKS, 1, start, BERLIN, Recurrence.FOREVER, 0);
+        assertThat(weekly.next(0, start), is(1));
+        assertThat(weekly.next(0, at(2025, 7, 1, 12)), is(26));
+        assertThat(weekly.next(0, at(2025, 7, 7, 8)), is(27));
+        assertThat(weekly.next(30, at(2025, 7, 1, 12)), is(31));
+
+        Recurrence daily = new Recurrence(RecurrenceUnit.DAYS, 1, at(2025, 3, 29, 22), BERLIN, Recurrence.FOREVER, 0);
+        for (int day = 1; day < 400; day++) {
+            long previous = daily.getTime(day - 1);
+            assertThat(daily.next(0, previous), is(day));
+            assertThat(daily.next(0, previous + 1), is(day));
+        }
+    }
+
+    @Test
+    void endsAfterCountOrEndDate() {
+        long start = at(2025, 1, 6, 8);
+        Recurrence counted = new Recurrence(RecurrenceUnit.DAYS, 2, start, BERLIN, Recurrence.FOREVER, 3);
+        assertThat(counted.next(1, start), is(2));
+        assertThat(counted.next(2, start), is(-1));
+
+        Recurrence bounded = new Recurrence(RecurrenceUnit.DAYS, 1, start, BERLIN, at(2025, 1, 8, 8), 0);
+        assertThat(bounded.next(1, start), is(2));
+        assertThat(bounded.next(2, start), is(-1));
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        long start = at(2025, 1, 6, 8);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Recurrence(RecurrenceUnit.DAYS, 0, start, BERLIN, Recurrence.FOREVER, 0));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Recurrence(RecurrenceUnit.DAYS, 1, start, BERLIN, start - 1, 0));
+    }
+
+    @Test
+    void describesTheRule() {
+        long start = ZonedDateTime.of(2030, 1, 1, 22, 0, 0, 0, BERLIN).toInstant().toEpochMilli();
+        Recurrence recurrence = new Recurrence(RecurrenceUnit.WEEKS, 2, start, BERLIN, at(2030, 12, 31, 22), 10);
+        assertThat(recurrence.getDescription(), is("every 2 week(s) until 31-12-2030 22:00:00, at most 10 times"));
+    }
+}
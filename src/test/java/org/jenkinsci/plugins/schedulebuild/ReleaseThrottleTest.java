@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Drives the throttle with explicit clock readings. Jenkins only runs to parse label expressions.
+ */
+@WithJenkins
+class ReleaseThrottleTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    void releasesTheBurstThenAtTheConfiguredRate() {
+        ReleaseThrottle throttle = throttle("linux", 6, 2);
+        for (int i = 0; i < 10; i++) {
+            throttle.hold(build("job" + i, T0), "linux");
+        }
+
+        assertThat(throttle.poll(T0).size(), is(2));
+        assertThat(throttle.poll(T0 + 9_999).size(), is(0));
+        assertThat(throttle.poll(T0 + 10_000).size(), is(1));
+        // a late tick releases what accrued since the previous one, but never more than the burst
+        assertThat(throttle.poll(T0 + 60_000).size(), is(2));
+        for (long now = T0 + 70_000; now <= T0 + 110_000; now += 10_000) {
+            assertThat(throttle.poll(now).size(), is(1));
+        }
+        assertThat(throttle.size(), is(0));
+    }
+
+    @Test
+    void throughputAndLatencyAreBounded() {
+        int rate = 10;
+        int burst = 5;
+        int count = 100;
+        ReleaseThrottle throttle = throttle("linux", rate, burst);
+        for (int i = 0; i < count; i++) {
+            throttle.hold(build("job" + (i % 3), T0), "linux");
+        }
+
+        List<Long> releaseTimes = new ArrayList<>();
+        for (long now = T0; throttle.size() > 0; now += 1000) {
+            for (ScheduledBuild build : throttle.poll(now)) {
+                releaseTimes.add(now - build.getDueTime());
+            }
+        }
+
+        assertThat(releaseTimes.size(), is(count));
+        // the burst goes at once, every later build waits for one token
+        long worstCase = (count - burst) * MINUTE / rate;
+        assertThat(releaseTimes.get(count - 1), is(worstCase));
+        for (int start = 0; start < releaseTimes.size(); start++) {
+            long windowEnd = releaseTimes.get(start) + MINUTE;
+            int inWindow = 0;
+            for (long latency : releaseTimes) {
+                if (latency >= releaseTimes.get(start) && latency < windowEnd) {
+                    inWindow++;
+                }
+            }
+            assertThat(inWindow, is(lessThanOrEqualTo(burst + rate)));
+        }
+    }
+
+    @Test
+    void jobsTakeTurns() {
+        ReleaseThrottle throttle = throttle("linux", 1, 1);
+        for (int i = 0; i < 5; i++) {
+            throttle.hold(build("busy", T0 + i), "linux");
+        }
+        throttle.hold(build("quiet", T0 + 10), "linux");
+
+        List<String> order = new ArrayList<>();
+        for (long now = T0 + 10; throttle.size() > 0; now += MINUTE) {
+            for (ScheduledBuild build : throttle.poll(now)) {
+                order.add(build.getJobFullName());
+            }
+        }
+
+        assertThat(order, contains("busy", "quiet", "busy", "busy", "busy", "busy"));
+    }
+
+    @Test
+    void limitedBuildsWaitUntilDueAndOthersPassThrough() {
+        ReleaseThrottle throttle = throttle("linux", 1, 1);
+        ScheduledBuild limited = build("limited", T0 + 5_000);
+        ScheduledBuild unlimited = build("unlimited", T0 + 5_000);
+        throttle.hold(limited, "linux");
+        throttle.hold(unlimited, "windows");
+
+        assertThat(throttle.poll(T0), contains(unlimited));
+        assertThat(throttle.poll(T0 + 4_999), is(empty()));
+        assertThat(throttle.poll(T0 + 5_000), contains(limited));
+    }
+
+    @Test
+    void labelExpressionsAreNormalized() {
+        ReleaseThrottle throttle = throttle("linux&&docker", 1, 1);
+        ScheduledBuild build = build("job", T0);
+        throttle.hold(build, LabelRateLimit.expression("linux && docker"));
+
+        assertThat(throttle.poll(T0), contains(build));
+        throttle.hold(build("job", T0), "linux&&docker");
+        assertThat(throttle.poll(T0), is(empty()));
+    }
+
+    @Test
+    void drainTakesEveryHeldBuild() {
+        ReleaseThrottle throttle = throttle("linux", 1, 1);
+        throttle.hold(build("job", T0), "linux");
+        throttle.hold(build("job", T0), "linux");
+        throttle.hold(build("job", T0 + MINUTE), "linux");
+        throttle.poll(T0);
+
+        assertThat(throttle.drain().size(), is(2));
+        assertThat(throttle.size(), is(0));
+    }
+
+    private static ReleaseThrottle throttle(String label, int buildsPerMinute, int burst) {
+        LabelRateLimit limit = new LabelRateLimit(label, buildsPerMinute);
+        limit.setBurst(burst);
+        return new ReleaseThrottle(List.of(limit), T0);
+    }
+
+    private static ScheduledBuild build(String job, long dueTime) {
+        return new ScheduledBuild(job, dueTime, null, List.of());
+    }
+}
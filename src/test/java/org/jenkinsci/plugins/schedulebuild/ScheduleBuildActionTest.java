@@ -3,22 +3,49 @@ package org.jenkinsci.plugins.schedulebuild;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import hudson.model.FileParameterDefinition;
+import hudson.model.FileParameterValue;
+import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterValue;
+import hudson.model.StringParameterDefinition;
 import hudson.util.FormValidation;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
+import org.htmlunit.html.HtmlFileInput;
+import org.htmlunit.html.HtmlForm;
+import org.htmlunit.html.HtmlPage;
+import org.htmlunit.html.HtmlTextInput;
+import org.htmlunit.util.WebConnectionWrapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
-import org.kohsuke.stapler.ForwardToView;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
 
@@ -27,9 +54,11 @@ class ScheduleBuildActionTest {
 
     private ScheduleBuildAction scheduleBuildAction;
     private FreeStyleProject project;
+    private JenkinsRule r;
 
     @BeforeEach
     void setUp(JenkinsRule r) throws IOException {
+        this.r = r;
         project = r.createFreeStyleProject();
         scheduleBuildAction = new ScheduleBuildAction(project);
     }
@@ -60,6 +89,32 @@ class ScheduleBuildActionTest {
         assertThat(scheduleBuildAction.getDisplayName(), is(nullValue()));
     }
 
+    @Test
+    void actionIsCreatedOncePerJob() throws Exception {
+        FreeStyleProject other = r.createFreeStyleProject();
+        ScheduleBuildAction action = project.getAction(ScheduleBuildAction.class);
+        assertThat(action.getOwner(), is(project));
+        assertThat(project.getAction(ScheduleBuildAction.class), is(sameInstance(action)));
+        assertThat(other.getAction(ScheduleBuildAction.class).getOwner(), is(other));
+    }
+
+    @Test
+    void actionFollowsRenamedAndRecreatedJobs() throws Exception {
+        String name = project.getName();
+        ScheduleBuildAction action = project.getAction(ScheduleBuildAction.class);
+        project.renameTo("renamed");
+
+        ScheduleBuildAction renamed = project.getAction(ScheduleBuildAction.class);
+        assertThat(renamed, is(sameInstance(action)));
+        assertThat(renamed.getOwner(), is(project));
+        assertThat(renamed.getIconClassName(), is(notNullValue()));
+
+        project.delete();
+        FreeStyleProject recreated = r.createFreeStyleProject("renamed");
+        assertThat(recreated.getAction(ScheduleBuildAction.class).getOwner(), is(recreated));
+        assertThat(r.createFreeStyleProject(name).getAction(ScheduleBuildAction.class).getOwner().getName(), is(name));
+    }
+
     @Test
     void testGetUrlName() {
         assertThat(scheduleBuildAction.getUrlName(), is("schedule"));
@@ -70,11 +125,6 @@ class ScheduleBuildActionTest {
         assertThat(scheduleBuildAction.getTarget(), is(scheduleBuildAction));
     }
 
-    @Test
-    void testGetQuietPeriodInSeconds() {
-        assertThat(scheduleBuildAction.getQuietPeriodInSeconds(), is(0L));
-    }
-
     @Test
     void testIsJobParameterized() {
         assertFalse(scheduleBuildAction.isJobParameterized());
@@ -120,22 +170,280 @@ class ScheduleBuildActionTest {
     }
 
     @Test
-    void testDoNextValidDate() {
+    void testDoNextValidDate() throws Exception {
         ZonedDateTime tomorrow = ZonedDateTime.now().plusDays(1);
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
         assertThat(
-                scheduleBuildAction.doNext(tomorrow.format(formatter), project), is(instanceOf(ForwardToView.class)));
+                scheduleBuildAction.doNext(null, tomorrow.format(formatter), null, null, null, null, project),
+                is(instanceOf(HttpRedirect.class)));
+        List<ScheduledBuild> pending = ScheduledBuildStore.get().getPending();
+        assertThat(pending.size(), is(1));
+        assertThat(pending.get(0).getJobFullName(), is(project.getFullName()));
+        assertThat(r.jenkins.getQueue().getItems().length, is(0));
+    }
+
+    @Test
+    void testDoNextRecurring() throws Exception {
+        ZonedDateTime tomorrow = ZonedDateTime.now().plusDays(1);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+        HttpResponse response =
+                scheduleBuildAction.doNext(null, tomorrow.format(formatter), "DAYS", "2", null, "5", project);
+        assertThat(response, is(instanceOf(HttpRedirect.class)));
+        List<ScheduledBuild> recurring = scheduleBuildAction.getPendingBuilds();
+        assertThat(recurring.size(), is(1));
+        Recurrence recurrence = recurring.get(0).getRecurrence();
+        assertThat(recurrence.getUnit(), is(RecurrenceUnit.DAYS));
+        assertThat(recurrence.getInterval(), is(2));
+        assertThat(recurrence.getCount(), is(5));
+        assertThat(recurrence.getUntil(), is(Recurrence.FOREVER));
+    }
+
+    @Test
+    void testDoNextInvalidRecurrence() throws Exception {
+        ZonedDateTime tomorrow = ZonedDateTime.now().plusDays(1);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+        String date = tomorrow.format(formatter);
+        scheduleBuildAction.doNext(null, date, "MONTHS", null, null, null, project);
+        scheduleBuildAction.doNext(null, date, "DAYS", "0", null, null, project);
+        scheduleBuildAction.doNext(null, date, "DAYS", null, tomorrow.minusDays(1).format(formatter), null, project);
+        assertThat(ScheduledBuildStore.get().size(), is(0));
+    }
+
+    @Test
+    void parameterizedBuildIsScheduledWithOnePost() throws Exception {
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("PARAM", "value"), new StringParameterDefinition("OTHER", "default")));
+        ZonedDateTime due = ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .plusSeconds(8)
+                .truncatedTo(ChronoUnit.SECONDS);
+        JenkinsRule.WebClient wc = r.createWebClient();
+        HtmlForm schedule = wc.getPage(project, "schedule").getFormByName("schedule");
+        schedule.getInputByName("date").setValue(due.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+        schedule.getInputsByName("value").get(0).setValue("scheduled");
+        AtomicInteger posts = new AtomicInteger();
+        new WebConnectionWrapper(wc) {
+            @Override
+            public WebResponse getResponse(WebRequest request) throws IOException {
+                if (request.getHttpMethod() == HttpMethod.POST) {
+                    posts.incrementAndGet();
+                }
+                return super.getResponse(request);
+            }
+        };
+
+        r.submit(schedule);
+        assertThat(posts.get(), is(1));
+        assertThat(ScheduledBuildStore.get().size(), is(1));
+
+        // The build is released by the periodic releaser, give up instead of hanging if it never comes
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        FreeStyleBuild build;
+        while ((build = project.getLastBuild()) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(build, is(notNullValue()));
+        r.waitForCompletion(build);
+        long error = build.getStartTimeInMillis() - due.toInstant().toEpochMilli();
+        assertThat(error, is(greaterThanOrEqualTo(0L)));
+        // Released by the first releaser tick at or after the due time, then given up to a tick to leave the queue
+        assertThat(error, is(lessThan(2 * ScheduledBuildStore.TICK_MILLIS)));
+        ParametersAction parameters = build.getAction(ParametersAction.class);
+        assertThat(parameters.getParameter("PARAM"), is(new StringParameterValue("PARAM", "scheduled")));
+        assertThat(parameters.getParameter("OTHER"), is(new StringParameterValue("OTHER", "default")));
     }
 
     @Test
-    void testDoNextInvalidDate() {
-        HttpResponse validation = scheduleBuildAction.doNext("43-23-2024 1:2:3", project);
+    void fileParameterIsUploadedWithTheSchedule() throws Exception {
+        project.addProperty(new ParametersDefinitionProperty(new FileParameterDefinition("upload.txt")));
+        File upload = Files.createTempFile("upload", ".txt").toFile();
+        Files.writeString(upload.toPath(), "uploaded content");
+        ZonedDateTime due = ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .plusSeconds(8)
+                .truncatedTo(ChronoUnit.SECONDS);
+        HtmlForm schedule = r.createWebClient().getPage(project, "schedule").getFormByName("schedule");
+        schedule.getInputByName("date").setValue(due.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+        ((HtmlFileInput) schedule.getInputByName("file")).setFiles(upload);
+
+        r.submit(schedule);
+        List<ScheduledBuild> pending = scheduleBuildAction.getPendingBuilds();
+        assertThat(pending.size(), is(1));
+        assertThat(pending.get(0).getDueTime(), is(due.toInstant().toEpochMilli()));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        FreeStyleBuild build;
+        while ((build = project.getLastBuild()) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(build, is(notNullValue()));
+        r.assertBuildStatusSuccess(r.waitForCompletion(build));
+        FileParameterValue value =
+                (FileParameterValue) build.getAction(ParametersAction.class).getParameter("upload.txt");
+        assertThat(value.getOriginalFileName(), is(upload.getName()));
+        assertThat(build.getWorkspace().child("upload.txt").readToString(), is("uploaded content"));
+    }
+
+    @Test
+    void testDoNextInvalidDate() throws Exception {
+        HttpResponse validation = scheduleBuildAction.doNext(null, "43-23-2024 1:2:3", null, null, null, null, project);
         assertThat(validation, is(instanceOf(HttpRedirect.class)));
     }
 
     @Test
-    void testDoNextDateInPast() {
-        HttpResponse validation = scheduleBuildAction.doNext("01-01-2020 01:00:00", project);
+    void testDoNextDateInPast() throws Exception {
+        HttpResponse validation =
+                scheduleBuildAction.doNext(null, "01-01-2020 01:00:00", null, null, null, null, project);
         assertThat(validation, is(instanceOf(HttpRedirect.class)));
     }
+
+    @Test
+    void buildTimeInBlackoutWindowIsRejected() throws Exception {
+        ZonedDateTime window = ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .plusDays(1)
+                .truncatedTo(ChronoUnit.HOURS);
+        BlackoutWindow blackout = new BlackoutWindow(scheduleBuildAction.formatTime(toMillis(window)), 120);
+        blackout.setRepeat("DAYS");
+        ScheduleBuildGlobalConfiguration.get().setBlackoutWindows(List.of(blackout));
+        String inWindow = scheduleBuildAction.formatTime(toMillis(window.plusDays(1).plusMinutes(30)));
+
+        FormValidation validation = scheduleBuildAction.doCheckDate(inWindow, project);
+        scheduleBuildAction.doNext(null, inWindow, null, null, null, null, project);
+
+        assertThat(validation.kind, is(FormValidation.Kind.ERROR));
+        assertThat(validation.getMessage(), containsString("blackout window until"));
+        assertThat(ScheduledBuildStore.get().size(), is(0));
+        String windowEnd = scheduleBuildAction.formatTime(toMillis(window.plusHours(2)));
+        assertThat(scheduleBuildAction.doCheckDate(windowEnd, project).kind, is(FormValidation.Kind.OK));
+    }
+
+    @Test
+    void buildTimeInBlackoutWindowIsMovedToItsEnd() throws Exception {
+        ZonedDateTime window = ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .plusDays(1)
+                .truncatedTo(ChronoUnit.HOURS);
+        BlackoutWindow blackout = new BlackoutWindow(scheduleBuildAction.formatTime(toMillis(window)), 120);
+        ScheduleBuildGlobalConfiguration.get().setBlackoutWindows(List.of(blackout));
+        ScheduleBuildGlobalConfiguration.get().setBlackoutPolicy(BlackoutPolicy.MOVE_TO_END);
+        String inWindow = scheduleBuildAction.formatTime(toMillis(window.plusMinutes(30)));
+
+        FormValidation validation = scheduleBuildAction.doCheckDate(inWindow, project);
+        scheduleBuildAction.doNext(null, inWindow, null, null, null, null, project);
+
+        assertThat(validation.kind, is(FormValidation.Kind.WARNING));
+        String windowEnd = scheduleBuildAction.formatTime(toMillis(window.plusHours(2)));
+        assertThat(validation.getMessage(), containsString("Expected to start at " + windowEnd));
+        List<ScheduledBuild> pending = ScheduledBuildStore.get().getPending();
+        assertThat(pending.size(), is(1));
+        assertThat(pending.get(0).getDueTime(), is(toMillis(window.plusHours(2))));
+    }
+
+    private static long toMillis(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    @Test
+    void testDoRescheduleKeepsParametersAndUser() throws Exception {
+        FreeStyleProject other = r.createFreeStyleProject();
+        long tomorrow = ZonedDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS).toInstant().toEpochMilli();
+        List<ParameterValue> parameters = List.of(new StringParameterValue("PARAM", "scheduled"));
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), tomorrow, "alice", parameters);
+        ScheduledBuild foreign = new ScheduledBuild(other.getFullName(), tomorrow, "alice", List.of());
+        ScheduledBuildStore.get().scheduleAll(List.of(build, foreign));
+        long later = tomorrow + TimeUnit.HOURS.toMillis(2);
+
+        HttpResponse response = scheduleBuildAction.doReschedule(build.getId(), scheduleBuildAction.formatTime(later));
+        scheduleBuildAction.doReschedule(foreign.getId(), scheduleBuildAction.formatTime(later));
+        scheduleBuildAction.doReschedule(build.getId(), "01-01-2020 01:00:00");
+
+        assertThat(response, is(instanceOf(HttpRedirect.class)));
+        ScheduledBuild moved = ScheduledBuildStore.get().getById(build.getId());
+        assertThat(moved.getDueTime(), is(later));
+        assertThat(moved.getUserId(), is("alice"));
+        assertThat(moved.getParameters(), is(parameters));
+        assertThat(ScheduledBuildStore.get().getById(foreign.getId()).getDueTime(), is(tomorrow));
+        assertThat(scheduleBuildAction.getPendingBuilds(), is(List.of(moved)));
+    }
+
+    @Test
+    void testDoCancel() throws Exception {
+        FreeStyleProject other = r.createFreeStyleProject();
+        long tomorrow = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), tomorrow, null, List.of());
+        ScheduledBuild foreign = new ScheduledBuild(other.getFullName(), tomorrow, null, List.of());
+        ScheduledBuildStore.get().scheduleAll(List.of(build, foreign));
+
+        scheduleBuildAction.doCancel(build.getId());
+        scheduleBuildAction.doCancel(foreign.getId());
+
+        assertThat(ScheduledBuildStore.get().getById(build.getId()), is(nullValue()));
+        assertThat(ScheduledBuildStore.get().getById(foreign.getId()), is(foreign));
+        assertThat(scheduleBuildAction.getPendingBuilds().isEmpty(), is(true));
+    }
+
+    @Test
+    void pendingBuildsCanBeCancelledFromTheSchedulePage() throws Exception {
+        long tomorrow = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuildStore.get().schedule(new ScheduledBuild(project.getFullName(), tomorrow, null, List.of()));
+        JenkinsRule.WebClient wc = r.createWebClient();
+        HtmlPage page = wc.getPage(project, "schedule");
+        assertThat(page.getElementById("schedule-build-pending"), is(notNullValue()));
+
+        r.submit(page.getFormByName("cancel"));
+
+        assertThat(ScheduledBuildStore.get().size(), is(0));
+    }
+
+    @Test
+    void clientSideParserAcceptsWhatTheServerAccepts() throws Exception {
+        HtmlPage page = r.createWebClient().getPage(project, "schedule");
+        for (String text : new String[] {
+            "31-12-2024 22:00:00",
+            " 1-2-2025 3:04:05 pm ",
+            "1-2-2025 12:00 AM",
+            "1-2-2025 0:30 AM",
+            "1-2-2025 0:30 PM",
+            "31-12-2024 24:00",
+            "31-04-2024 1:2:3",
+            "007-02-2025 07:05",
+            "1-1-2024 13:00 PM",
+            "31-12-2024 24:01",
+            "1-1-0 10:00",
+            "1-1-2024 10:00:",
+        }) {
+            Object parsed = page.executeJavaScript("scheduleBuildParse('" + text + "')").getJavaScriptResult();
+            LocalDateTime expected = ScheduleTimeParser.tryParseDateTime(text);
+            assertThat(
+                    text,
+                    parsed == null ? null : ((Number) parsed).longValue(),
+                    is(expected == null ? null : expected.toInstant(ZoneOffset.UTC).toEpochMilli()));
+        }
+    }
+
+    @Test
+    void typingADateSendsASingleServerCheck() throws Exception {
+        JenkinsRule.WebClient wc = r.createWebClient();
+        AtomicInteger checks = new AtomicInteger();
+        new WebConnectionWrapper(wc) {
+            @Override
+            public WebResponse getResponse(WebRequest request) throws IOException {
+                if (request.getUrl().getPath().endsWith("/schedule/checkDate")) {
+                    checks.incrementAndGet();
+                }
+                return super.getResponse(request);
+            }
+        };
+        HtmlPage page = wc.getPage(project, "schedule");
+        wc.waitForBackgroundJavaScript(2000);
+        HtmlTextInput input = page.getHtmlElementById("schedule-build-input");
+
+        checks.set(0);
+        input.setValue("");
+        input.type("31-12-20");
+        wc.waitForBackgroundJavaScript(2000);
+        assertThat(checks.get(), is(0));
+
+        input.setValue("");
+        input.type(ZonedDateTime.now().plusDays(1).format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+        wc.waitForBackgroundJavaScript(2000);
+        assertThat(checks.get(), is(1));
+    }
 }
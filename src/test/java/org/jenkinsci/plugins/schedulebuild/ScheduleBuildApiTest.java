@@ -0,0 +1,330 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.Page;
+import org.htmlunit.WebRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduleBuildApiTest {
+
+    private JenkinsRule j;
+    private ScheduleBuildApi api;
+    private String tomorrow;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+        api = ExtensionList.lookupSingleton(ScheduleBuildApi.class);
+        tomorrow = ZonedDateTime.now().plusDays(1).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Test
+    void schedulesEveryValidItemAndReportsErrorsPerItem() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("plain");
+        FreeStyleProject parameterized = j.createFreeStyleProject("parameterized");
+        parameterized.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("A", "a"), new StringParameterDefinition("B", "b")));
+        JSONArray items = new JSONArray();
+        items.add(item("plain", tomorrow));
+        items.add(item("parameterized", tomorrow).element("parameters", new JSONObject().element("A", "x")));
+        items.add(item("missing", tomorrow));
+        items.add(item("plain", "not a date"));
+        items.add(item("plain", "2020-01-01T00:00:00Z"));
+        items.add(item("parameterized", tomorrow).element("parameters", new JSONObject().element("C", "x")));
+
+        JSONArray results = api.scheduleAll(items, System.currentTimeMillis());
+
+        assertThat(results.size(), is(6));
+        assertThat(results.getJSONObject(0).getString("status"), is("scheduled"));
+        assertThat(results.getJSONObject(1).getString("status"), is("scheduled"));
+        for (int i = 2; i < 6; i++) {
+            assertThat(results.getJSONObject(i).getString("status"), is("error"));
+        }
+        assertThat(results.getJSONObject(2).getString("message"), containsString("missing"));
+        ScheduledBuild build = ScheduledBuildStore.get().getById(results.getJSONObject(1).getString("id"));
+        assertThat(build.getJobFullName(), is(parameterized.getFullName()));
+        assertThat(build.getParameters().size(), is(2));
+        assertThat(build.getParameters().get(0), is(new StringParameterValue("A", "x")));
+        assertThat(build.getParameters().get(1), is(new StringParameterValue("B", "b")));
+        assertThat(ScheduledBuildStore.get().size(), is(2));
+        assertThat(project.isInQueue(), is(false));
+    }
+
+    @Test
+    void reportsCoalescedItems() throws Exception {
+        j.createFreeStyleProject("plain");
+        ScheduleBuildGlobalConfiguration.get().setCoalescingWindow(60);
+        ZonedDateTime due = ZonedDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        JSONArray items = new JSONArray();
+        items.add(item("plain", due.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+        items.add(item("plain", due.plusSeconds(30).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+
+        JSONArray results = api.scheduleAll(items, System.currentTimeMillis());
+
+        assertThat(results.getJSONObject(0).getString("status"), is("scheduled"));
+        assertThat(results.getJSONObject(1).getString("status"), is("coalesced"));
+        assertThat(results.getJSONObject(1).getString("id"), is(results.getJSONObject(0).getString("id")));
+        assertThat(results.getJSONObject(1).getString("time"), is(results.getJSONObject(0).getString("time")));
+        ScheduledBuild build = ScheduledBuildStore.get().getPending().get(0);
+        assertThat(build.getRequestCount(), is(2));
+        assertThat(ScheduleBuildApi.toJSON(build, ZoneId.of("UTC")).getJSONArray("coalesced").size(), is(1));
+    }
+
+    @Test
+    void localTimesUseConfiguredTimeZone() {
+        ScheduleBuildGlobalConfiguration.get().setTimeZone("Asia/Tokyo");
+        ZoneId zone = ScheduleBuildGlobalConfiguration.get().getZoneId();
+        assertThat(ScheduleBuildApi.parseTime("2030-01-31T22:00:00", zone).getZone(), is(zone));
+        assertThat(ScheduleBuildApi.parseTime("2030-01-31T22:00:00Z", zone).getOffset(), is(ZoneOffset.UTC));
+    }
+
+    @Test
+    void requiresBuildPermissionPerJob() throws Exception {
+        j.createFreeStyleProject("allowed");
+        j.createFreeStyleProject("denied");
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ, Item.READ)
+                .everywhere()
+                .to("alice")
+                .grant(Item.BUILD)
+                .onItems(j.jenkins.getItem("allowed"))
+                .to("alice"));
+        JSONArray items = new JSONArray();
+        items.add(item("allowed", tomorrow));
+        items.add(item("denied", tomorrow));
+
+        JenkinsRule.WebClient wc = j.createWebClient().login("alice");
+        WebRequest request = new WebRequest(new URL(j.getURL(), "schedule-build/bulk"), HttpMethod.POST);
+        request.setAdditionalHeader("Content-Type", "application/json");
+        request.setRequestBody(items.toString());
+        wc.addCrumb(request);
+        Page page = wc.getPage(request);
+
+        JSONArray results = JSONObject.fromObject(page.getWebResponse().getContentAsString()).getJSONArray("results");
+        assertThat(results.getJSONObject(0).getString("status"), is("scheduled"));
+        assertThat(results.getJSONObject(1).getString("status"), is("error"));
+        assertThat(ScheduledBuildStore.get().getPending().get(0).getUserId(), is("alice"));
+    }
+
+    @Test
+    void schedulesThousandBuildsInOneRequest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            j.createFreeStyleProject("job" + i);
+        }
+        JSONArray items = new JSONArray();
+        ZonedDateTime base = ZonedDateTime.now().plusDays(1);
+        for (int i = 0; i < 1000; i++) {
+            items.add(item("job" + (i % 10), base.plusSeconds(i).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+        }
+
+        long started = System.nanoTime();
+        JSONArray results = api.scheduleAll(items, System.currentTimeMillis());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(results.size(), is(1000));
+        assertThat(ScheduledBuildStore.get().size(), is(1000));
+        assertThat(elapsed, is(lessThan(TimeUnit.SECONDS.toMillis(1))));
+    }
+
+    @Test
+    void listsPendingBuildsInDueTimeOrder() throws Exception {
+        j.createFreeStyleProject("a");
+        j.createFolder("folder").createProject(FreeStyleProject.class, "b");
+        long base = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        List<ScheduledBuild> builds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            String job = i % 2 == 0 ? "a" : "folder/b";
+            builds.add(new ScheduledBuild(job, base + 1000L * (250 - i), i % 5 == 0 ? "alice" : null, List.of()));
+        }
+        ScheduledBuildStore.get().scheduleAll(builds);
+        JenkinsRule.WebClient wc = j.createWebClient();
+
+        JSONObject all = pending(wc, "");
+        assertThat(all.getJSONArray("builds").size(), is(250));
+        assertThat(all.has("next"), is(false));
+        assertThat(dueTimes(all), is(sorted(dueTimes(all))));
+
+        List<Long> paged = new ArrayList<>();
+        String query = "limit=40&folder=folder";
+        while (true) {
+            JSONObject page = pending(wc, query);
+            paged.addAll(dueTimes(page));
+            if (!page.has("next")) {
+                break;
+            }
+            query = "limit=40&folder=folder&cursor="
+                    + URLEncoder.encode(page.getString("next"), StandardCharsets.UTF_8);
+        }
+        assertThat(paged.size(), is(125));
+        assertThat(paged, is(sorted(paged)));
+        assertThat(pending(wc, "limit=125&folder=folder").has("next"), is(false));
+        assertThat(pending(wc, "limit=124&folder=folder").has("next"), is(true));
+
+        String from = Instant.ofEpochMilli(base + 1000L * 100).toString();
+        String to = Instant.ofEpochMilli(base + 1000L * 149).toString();
+        JSONArray range = pending(wc, "user=alice&from=" + from + "&to=" + to).getJSONArray("builds");
+        assertThat(range.size(), is(10));
+        assertThat(range.getJSONObject(0).getString("user"), is("alice"));
+
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        Page invalid = wc.goTo("schedule-build/pending?cursor=nonsense", null);
+        assertThat(invalid.getWebResponse().getStatusCode(), is(400));
+    }
+
+    @Test
+    void reschedulesAndCancelsManyBuildsInOneRequest() throws Exception {
+        FreeStyleProject parameterized = j.createFreeStyleProject("parameterized");
+        parameterized.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("A", "a")));
+        long base = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        List<ScheduledBuild> builds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            builds.add(new ScheduledBuild(
+                    "parameterized", base + 1000L * i, "alice", List.of(new StringParameterValue("A", "x" + i))));
+        }
+        ScheduledBuildStore.get().scheduleAll(builds);
+        String later = Instant.ofEpochMilli(base + TimeUnit.HOURS.toMillis(1)).toString();
+        JSONArray moves = new JSONArray();
+        for (int i = 0; i < 50; i++) {
+            moves.add(new JSONObject().element("id", builds.get(i).getId()).element("time", later));
+        }
+        moves.add(new JSONObject().element("id", "missing").element("time", later));
+        moves.add(new JSONObject().element("id", builds.get(50).getId()).element("time", "2020-01-01T00:00:00Z"));
+
+        JSONArray moved = api.rescheduleAll(moves, System.currentTimeMillis());
+
+        assertThat(moved.size(), is(52));
+        for (int i = 0; i < 50; i++) {
+            assertThat(moved.getJSONObject(i).getString("status"), is("rescheduled"));
+            ScheduledBuild build = ScheduledBuildStore.get().getById(builds.get(i).getId());
+            assertThat(build.getDueTime(), is(base + TimeUnit.HOURS.toMillis(1)));
+            assertThat(build.getUserId(), is("alice"));
+            assertThat(build.getParameters(), is(List.of(new StringParameterValue("A", "x" + i))));
+        }
+        assertThat(moved.getJSONObject(50).getString("message"), containsString("missing"));
+        assertThat(moved.getJSONObject(51).getString("status"), is("error"));
+        assertThat(ScheduledBuildStore.get().getById(builds.get(50).getId()).getDueTime(), is(base + 1000L * 50));
+        assertThat(ScheduledBuildStore.get().getPending().get(0).getId(), is(builds.get(50).getId()));
+
+        JSONArray ids = new JSONArray();
+        for (int i = 0; i < 100; i += 2) {
+            ids.add(builds.get(i).getId());
+        }
+        ids.add(new JSONObject().element("id", builds.get(1).getId()));
+        ids.add("missing");
+
+        JSONArray cancelled = api.cancelAll(ids);
+
+        assertThat(cancelled.size(), is(52));
+        for (int i = 0; i < 51; i++) {
+            assertThat(cancelled.getJSONObject(i).getString("status"), is("cancelled"));
+        }
+        assertThat(cancelled.getJSONObject(51).getString("status"), is("error"));
+        assertThat(ScheduledBuildStore.get().size(), is(49));
+    }
+
+    @Test
+    void requiresCancelPermissionPerJob() throws Exception {
+        j.createFreeStyleProject("allowed");
+        j.createFreeStyleProject("denied");
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ, Item.READ)
+                .everywhere()
+                .to("alice")
+                .grant(Item.CANCEL)
+                .onItems(j.jenkins.getItem("allowed"))
+                .to("alice"));
+        long tomorrow = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuild allowed = new ScheduledBuild("allowed", tomorrow, null, List.of());
+        ScheduledBuild denied = new ScheduledBuild("denied", tomorrow, null, List.of());
+        ScheduledBuildStore.get().scheduleAll(List.of(allowed, denied));
+        JSONArray ids = new JSONArray();
+        ids.add(allowed.getId());
+        ids.add(denied.getId());
+
+        JenkinsRule.WebClient wc = j.createWebClient().login("alice");
+        WebRequest request = new WebRequest(new URL(j.getURL(), "schedule-build/cancel"), HttpMethod.POST);
+        request.setAdditionalHeader("Content-Type", "application/json");
+        request.setRequestBody(ids.toString());
+        wc.addCrumb(request);
+        Page page = wc.getPage(request);
+
+        JSONArray results = JSONObject.fromObject(page.getWebResponse().getContentAsString()).getJSONArray("results");
+        assertThat(results.getJSONObject(0).getString("status"), is("cancelled"));
+        assertThat(results.getJSONObject(1).getString("status"), is("error"));
+        assertThat(ScheduledBuildStore.get().getPending(), is(List.of(denied)));
+    }
+
+    @Test
+    void rejectsRequestsWithTooManyItems() throws Exception {
+        JSONArray ids = new JSONArray();
+        for (int i = 0; i <= ScheduleBuildApi.MAX_ITEMS; i++) {
+            ids.add("missing");
+        }
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        WebRequest request = new WebRequest(new URL(j.getURL(), "schedule-build/cancel"), HttpMethod.POST);
+        request.setAdditionalHeader("Content-Type", "application/json");
+        request.setRequestBody(ids.toString());
+        wc.addCrumb(request);
+
+        assertThat(wc.getPage(request).getWebResponse().getStatusCode(), is(413));
+    }
+
+    private static JSONObject pending(JenkinsRule.WebClient wc, String query) throws Exception {
+        Page page = wc.goTo("schedule-build/pending?" + query, "application/json");
+        return JSONObject.fromObject(page.getWebResponse().getContentAsString());
+    }
+
+    private static List<Long> dueTimes(JSONObject page) {
+        List<Long> times = new ArrayList<>();
+        for (Object build : page.getJSONArray("builds")) {
+            times.add(ZonedDateTime.parse(((JSONObject) build).getString("time")).toInstant().toEpochMilli());
+        }
+        return times;
+    }
+
+    private static List<Long> sorted(List<Long> times) {
+        List<Long> sorted = new ArrayList<>(times);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static JSONObject item(String job, String time) {
+        return new JSONObject().element("job", job).element("time", time);
+    }
+}
@@ -0,0 +1,101 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ListView;
+import hudson.model.TopLevelItem;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.security.FullControlOnceLoggedInAuthorizationStrategy;
+import hudson.security.SecurityRealm;
+import java.util.Collection;
+import java.util.Collections;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/**
+ * The work {@link ScheduleBuildButtonColumn} does to render a list view of 2,000 jobs, one in ten of them disabled,
+ * for a logged in user. Under {@code loggedIn} every job shares the root ACL. Under {@code perJob} the build
+ * permission is granted job by job and every job has an ACL of its own, like under matrix or role based
+ * strategies, so memoizing by ACL cannot save a check and only its overhead is measured.
+ */
+@JmhBenchmark
+public class ScheduleBuildButtonColumnBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        static final int JOBS = 2000;
+
+        @Param({"loggedIn", "perJob"})
+        public String strategy;
+
+        Collection<TopLevelItem> items;
+        Authentication user;
+
+        @Override
+        public void setup() throws Exception {
+            Jenkins jenkins = getJenkins();
+            user = new UsernamePasswordAuthenticationToken(
+                    "alice", null, Collections.singleton(SecurityRealm.AUTHENTICATED_AUTHORITY2));
+            ListView view = new ListView("large", jenkins);
+            jenkins.addView(view);
+            for (int i = 0; i < JOBS; i++) {
+                FreeStyleProject project = jenkins.createProject(FreeStyleProject.class, "job" + i);
+                if (i % 10 == 0) {
+                    project.disable();
+                }
+                view.add(project);
+            }
+            items = view.getItems();
+            if (strategy.equals("perJob")) {
+                jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                        .grant(Jenkins.READ)
+                        .everywhere()
+                        .to("alice")
+                        .grant(Item.READ, Item.BUILD)
+                        .onItems(items.toArray(new Item[0]))
+                        .to("alice"));
+            } else {
+                jenkins.setAuthorizationStrategy(new FullControlOnceLoggedInAuthorizationStrategy());
+            }
+        }
+    }
+
+    /**
+     * The checks the column made for every row before they were memoized per request.
+     */
+    @Benchmark
+    public int checkEveryRow(JenkinsState state) {
+        int shown = 0;
+        try (ACLContext context = ACL.as2(state.user)) {
+            for (TopLevelItem item : state.items) {
+                if (item instanceof Job && ((Job<?, ?>) item).isBuildable() && item.hasPermission(Item.BUILD)) {
+                    shown++;
+                }
+            }
+        }
+        return shown;
+    }
+
+    @Benchmark
+    public int checkOncePerAcl(JenkinsState state) {
+        ScheduleBuildButtonColumn.Visibility visibility = new ScheduleBuildButtonColumn.Visibility(state.user);
+        int shown = 0;
+        for (TopLevelItem item : state.items) {
+            if (visibility.shows(item)) {
+                shown++;
+            }
+        }
+        return shown;
+    }
+}
@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.TopLevelItem;
+import hudson.security.ACL;
+import hudson.security.AuthorizationStrategy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.model.Jenkins;
+import org.htmlunit.html.HtmlPage;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduleBuildButtonColumnTest {
+
+    @Test
+    void buttonIsShownForBuildableJobsTheUserMayBuild(JenkinsRule j) throws Exception {
+        FreeStyleProject allowed = j.createFreeStyleProject("allowed");
+        j.createFreeStyleProject("denied");
+        j.createFreeStyleProject("disabled").disable();
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ, Item.READ)
+                .everywhere()
+                .to("alice")
+                .grant(Item.BUILD)
+                .onItems(allowed, j.jenkins.getItem("disabled"))
+                .to("alice"));
+
+        HtmlPage page = j.createWebClient().login("alice").goTo("");
+
+        assertThat(page.querySelectorAll("a[href$='/schedule']").size(), is(1));
+        assertThat(page.querySelectorAll("a[href$='job/allowed/schedule']").size(), is(1));
+    }
+
+    @Test
+    void permissionIsCheckedOncePerAcl(JenkinsRule j) throws Exception {
+        List<TopLevelItem> jobs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            jobs.add(j.createFreeStyleProject("job" + i));
+        }
+        AtomicInteger checks = new AtomicInteger();
+        j.jenkins.setAuthorizationStrategy(new SharedAclStrategy(checks));
+        ScheduleBuildButtonColumn.Visibility visibility =
+                new ScheduleBuildButtonColumn.Visibility(Jenkins.getAuthentication2());
+
+        for (TopLevelItem job : jobs) {
+            assertThat(visibility.shows(job), is(true));
+        }
+        assertThat(checks.get(), is(1));
+    }
+
+    /**
+     * Returns the root ACL for every item, like global authorization strategies do.
+     */
+    private static final class SharedAclStrategy extends AuthorizationStrategy {
+        private final ACL acl;
+
+        SharedAclStrategy(AtomicInteger checks) {
+            acl = ACL.lambda2((a, permission) -> {
+                if (permission == Item.BUILD) {
+                    checks.incrementAndGet();
+                }
+                return true;
+            });
+        }
+
+        @Override
+        public ACL getRootACL() {
+            return acl;
+        }
+
+        @Override
+        public Collection<String> getGroups() {
+            return Collections.emptySet();
+        }
+    }
+}
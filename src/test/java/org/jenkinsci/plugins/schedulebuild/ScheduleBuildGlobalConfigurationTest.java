@@ -6,10 +6,17 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.net.URL;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.TimeZone;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.Page;
+import org.htmlunit.WebRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -127,6 +134,18 @@ class ScheduleBuildGlobalConfigurationTest {
         assertThat(globalConfig.getZoneId(), is(ZoneId.systemDefault()));
     }
 
+    @Test
+    void testZoneIdIsResolvedOnlyWhenChanged() {
+        globalConfig.setTimeZone("Europe/Rome");
+        ZoneId zone = globalConfig.getZoneId();
+        assertThat(zone.getId(), is("Europe/Rome"));
+        assertThat(globalConfig.getZoneId(), is(sameInstance(zone)));
+
+        globalConfig.setTimeZone("Asia/Tokyo");
+        assertThat(globalConfig.getZoneId().getId(), is("Asia/Tokyo"));
+        assertThat(globalConfig.getDefaultScheduleTimeObject().getZone().getId(), is("Asia/Tokyo"));
+    }
+
     @Test
     void testGetDefaultScheduleTimeObject() {
         ZonedDateTime zdt = globalConfig.getDefaultScheduleTimeObject();
@@ -134,4 +153,34 @@ class ScheduleBuildGlobalConfigurationTest {
         assertThat(zdt.getMinute(), is(0));
         assertThat(zdt.getSecond(), is(0));
     }
+
+    @Test
+    void testDoFillTimeZoneItemsIsCached() throws Exception {
+        globalConfig.setTimeZone("Europe/Rome");
+        JenkinsRule.WebClient wc = j.createWebClient();
+        String path = "descriptorByName/" + ScheduleBuildGlobalConfiguration.class.getName() + "/fillTimeZoneItems";
+        WebRequest request = wc.addCrumb(new WebRequest(new URL(j.getURL(), path), HttpMethod.POST));
+        Page page = wc.getPage(request);
+        assertThat(page.getWebResponse().getStatusCode(), is(200));
+        JSONArray values = JSONObject.fromObject(page.getWebResponse().getContentAsString()).getJSONArray("values");
+        assertThat(values.size(), is(ZoneId.getAvailableZoneIds().size()));
+        int selected = 0;
+        for (int i = 0; i < values.size(); i++) {
+            JSONObject option = values.getJSONObject(i);
+            assertThat(option.getString("name"), is(option.getString("value")));
+            if (option.getBoolean("selected")) {
+                selected++;
+                assertThat(option.getString("value"), is("Europe/Rome"));
+            }
+        }
+        assertThat(selected, is(1));
+
+        // The cached options are shared, selecting another zone must not leave the previous one selected
+        globalConfig.setTimeZone("Asia/Tokyo");
+        ListBoxModel items = globalConfig.doFillTimeZoneItems();
+        assertThat(items.size(), is(values.size()));
+        for (ListBoxModel.Option option : items) {
+            assertThat(option.value, option.selected, is(option.value.equals("Asia/Tokyo")));
+        }
+    }
 }
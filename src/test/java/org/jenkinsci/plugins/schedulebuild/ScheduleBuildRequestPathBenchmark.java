@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import hudson.model.Action;
+import hudson.model.FreeStyleProject;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Code that runs on every request to the schedule page, the form validation behind it and the global configuration.
+ */
+@JmhBenchmark
+public class ScheduleBuildRequestPathBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        FreeStyleProject project;
+        ScheduleBuildAction action;
+        ScheduleBuildGlobalConfiguration configuration;
+        ScheduleBuildTransientProjectActionFactory factory;
+        String date;
+
+        @Override
+        public void setup() throws Exception {
+            project = getJenkins().createProject(FreeStyleProject.class, "job");
+            action = new ScheduleBuildAction(project);
+            configuration = ScheduleBuildGlobalConfiguration.get();
+            factory = getJenkins()
+                    .getExtensionList(ScheduleBuildTransientProjectActionFactory.class)
+                    .get(0);
+            date = ZonedDateTime.now().plusDays(1).format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss"));
+        }
+    }
+
+    @Benchmark
+    public FormValidation doCheckDate(JenkinsState state) {
+        return state.action.doCheckDate(state.date, state.project);
+    }
+
+    @Benchmark
+    public String getDefaultDate(JenkinsState state) {
+        return state.action.getDefaultDate();
+    }
+
+    @Benchmark
+    public String getMinDate(JenkinsState state) {
+        return state.action.getMinDate();
+    }
+
+    @Benchmark
+    public ZoneId getZoneId(JenkinsState state) {
+        return state.configuration.getZoneId();
+    }
+
+    @Benchmark
+    public ListBoxModel doFillTimeZoneItems(JenkinsState state) {
+        return state.configuration.doFillTimeZoneItems();
+    }
+
+    @Benchmark
+    public Collection<? extends Action> createFor(JenkinsState state) {
+        return state.factory.createFor(state.project);
+    }
+
+    @Benchmark
+    public ScheduleBuildAction getAction(JenkinsState state) {
+        return state.project.getAction(ScheduleBuildAction.class);
+    }
+}
@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ListView;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import org.htmlunit.html.HtmlForm;
+import org.htmlunit.html.HtmlPage;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.MockFolder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduleJobsActionTest {
+
+    @Test
+    void viewSchedulesTheJobsTheUserMayBuild(JenkinsRule j) throws Exception {
+        FreeStyleProject first = j.createFreeStyleProject("first");
+        FreeStyleProject second = j.createFreeStyleProject("second");
+        FreeStyleProject denied = j.createFreeStyleProject("denied");
+        second.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("PARAM", "default")));
+        ListView view = new ListView("nightly", j.jenkins);
+        j.jenkins.addView(view);
+        view.add(first);
+        view.add(second);
+        view.add(denied);
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ, Item.READ)
+                .everywhere()
+                .to("alice")
+                .grant(Item.BUILD)
+                .onItems(first, second)
+                .to("alice"));
+        ZonedDateTime due = ZonedDateTime.now(ScheduleBuildGlobalConfiguration.get().getZoneId())
+                .plusDays(1)
+                .truncatedTo(ChronoUnit.SECONDS);
+
+        HtmlPage page = j.createWebClient().login("alice").goTo("view/nightly/schedule");
+        assertThat(
+                page.getElementById("schedule-build-jobs").getTextContent(),
+                is("2 jobs will be scheduled, with the default values of their parameters."));
+        HtmlForm form = page.getFormByName("schedule");
+        form.getInputByName("date").setValue(due.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+        form.getInputByName("stagger").setValue("30");
+        j.submit(form);
+
+        List<ScheduledBuild> pending = ScheduledBuildStore.get().getPending();
+        assertThat(pending.size(), is(2));
+        long dueTime = due.toInstant().toEpochMilli();
+        assertThat(pending.get(0).getJobFullName(), is("first"));
+        assertThat(pending.get(0).getDueTime(), is(dueTime));
+        assertThat(pending.get(0).getUserId(), is("alice"));
+        assertThat(pending.get(1).getJobFullName(), is("second"));
+        assertThat(pending.get(1).getDueTime(), is(dueTime + TimeUnit.SECONDS.toMillis(30)));
+        assertThat(pending.get(1).getParameters(), contains(new StringParameterValue("PARAM", "default")));
+    }
+
+    @Test
+    void folderSchedulesTheJobsOfItsSubfolders(JenkinsRule j) throws Exception {
+        MockFolder folder = j.createFolder("folder");
+        folder.createProject(FreeStyleProject.class, "b");
+        folder.createProject(MockFolder.class, "sub").createProject(FreeStyleProject.class, "a");
+        long due = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+
+        ScheduleJobsAction action = folder.getAction(ScheduleJobsAction.class);
+        ScheduleJobsAction.schedule(action.getBuildableJobs(), due, TimeUnit.MINUTES.toMillis(1));
+
+        List<ScheduledBuild> pending = ScheduledBuildStore.get().getPending();
+        assertThat(pending.size(), is(2));
+        assertThat(pending.get(0).getJobFullName(), is("folder/b"));
+        assertThat(pending.get(1).getJobFullName(), is("folder/sub/a"));
+        assertThat(pending.get(1).getDueTime(), is(due + TimeUnit.MINUTES.toMillis(1)));
+    }
+
+    @Test
+    void staggeredBuildsFollowTheBlackoutPolicy(JenkinsRule j) throws Exception {
+        j.createFreeStyleProject("first");
+        j.createFreeStyleProject("second");
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        long due = ZonedDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+        long step = TimeUnit.MINUTES.toMillis(1);
+        config.setBlackoutWindows(List.of(new BlackoutWindow(config.formatDateTime(due + step), 30)));
+        List<Job<?, ?>> jobs = new ScheduleJobsAction(j.jenkins.getPrimaryView()).getBuildableJobs();
+
+        // The second build falls in the window, so the whole batch is rejected
+        assertThrows(IllegalArgumentException.class, () -> ScheduleJobsAction.schedule(jobs, due, step));
+        assertThat(ScheduledBuildStore.get().size(), is(0));
+
+        config.setBlackoutPolicy(BlackoutPolicy.MOVE_TO_END);
+        ScheduleJobsAction.schedule(jobs, due, step);
+        List<ScheduledBuild> pending = ScheduledBuildStore.get().getPending();
+        assertThat(pending.get(0).getDueTime(), is(due));
+        assertThat(pending.get(1).getDueTime(), is(due + TimeUnit.MINUTES.toMillis(31)));
+    }
+
+    @Test
+    void batchIsReleasedTogether(JenkinsRule j) throws Exception {
+        for (int i = 0; i < 20; i++) {
+            j.createFreeStyleProject("job" + i);
+        }
+        long now = System.currentTimeMillis();
+        ScheduleJobsAction action = new ScheduleJobsAction(j.jenkins.getPrimaryView());
+        ScheduleJobsAction.schedule(action.getBuildableJobs(), now + TimeUnit.MINUTES.toMillis(1), 0);
+
+        // the periodic releaser may get there first, either way all builds have to end up in the queue
+        new ScheduledBuildReleaser().release(now);
+        assertThat(ScheduledBuildStore.get().size(), is(0));
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (j.jenkins.getQueue().getItems().length < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(j.jenkins.getQueue().getItems().length, is(20));
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link ScheduleTimeParser} with the formatter loop it replaced, for a 24 hour time, a 12 hour time that
+ * only the second formatter accepts, and an invalid time.
+ */
+@State(Scope.Benchmark)
+public class ScheduleTimeParserBenchmark {
+
+    private static final DateTimeFormatter[] FORMATTERS = {
+        DateTimeFormatter.ofPattern("d-M-y H:m[:s]"), DateTimeFormatter.ofPattern("d-M-y h:m[:s] a", Locale.ROOT),
+    };
+
+    @Param({"31-12-2024 22:00:00", "31-12-2024 10:00:00 pm", "31-12-2024 22h00"})
+    public String text;
+
+    @Benchmark
+    public LocalDateTime formatterLoop() {
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return LocalDateTime.parse(text.trim().toUpperCase(Locale.ROOT), formatter);
+            } catch (DateTimeParseException e) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public LocalDateTime scheduleTimeParser() {
+        return ScheduleTimeParser.tryParseDateTime(text);
+    }
+}
@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ScheduleTimeParserTest {
+
+    /** The formatters {@link ScheduleTimeParser} replaced, tried one after the other. */
+    private static final DateTimeFormatter[] DATE_TIME_FORMATTERS = {
+        DateTimeFormatter.ofPattern("d-M-y H:m[:s]"), DateTimeFormatter.ofPattern("d-M-y h:m[:s] a", Locale.ROOT),
+    };
+
+    private static final DateTimeFormatter[] TIME_FORMATTERS = {
+        DateTimeFormatter.ofPattern("H:m[:s]"), DateTimeFormatter.ofPattern("h:m[:s] a", Locale.ROOT),
+    };
+
+    @Test
+    void parsesAllAcceptedDateTimeForms() {
+        assertThat(
+                ScheduleTimeParser.tryParseDateTime("31-12-2024 22:00:00"), is(LocalDateTime.of(2024, 12, 31, 22, 0)));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-2-2025 3:4"), is(LocalDateTime.of(2025, 2, 1, 3, 4)));
+        assertThat(
+                ScheduleTimeParser.tryParseDateTime(" 1-2-2025 3:04:05 pm "),
+                is(LocalDateTime.of(2025, 2, 1, 15, 4, 5)));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-2-2025 12:00 AM"), is(LocalDateTime.of(2025, 2, 1, 0, 0)));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-2-2025 0:30 AM"), is(LocalDateTime.of(2025, 2, 1, 0, 30)));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-2-2025 0:30 PM"), is(LocalDateTime.of(2025, 2, 1, 12, 30)));
+    }
+
+    @Test
+    void resolvesLikeTheFormatters() {
+        assertThat(ScheduleTimeParser.tryParseDateTime("31-04-2024 1:2:3"), is(LocalDateTime.of(2024, 4, 30, 1, 2, 3)));
+        assertThat(ScheduleTimeParser.tryParseDateTime("31-12-2024 24:00"), is(LocalDateTime.of(2025, 1, 1, 0, 0)));
+        assertThat(ScheduleTimeParser.tryParseTime("24:00"), is(LocalTime.MIDNIGHT));
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThat(ScheduleTimeParser.tryParseDateTime("43-23-2024 1:2:3"), is(nullValue()));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-1-2024 13:00 PM"), is(nullValue()));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-1-2024 10:00:"), is(nullValue()));
+        assertThat(ScheduleTimeParser.tryParseDateTime("1-1-2024"), is(nullValue()));
+        assertThat(ScheduleTimeParser.tryParseTime("10:60"), is(nullValue()));
+        assertThat(ScheduleTimeParser.tryParseTime(""), is(nullValue()));
+    }
+
+    @Test
+    void reportsWhereParsingFailed() {
+        DateTimeParseException e =
+                assertThrows(DateTimeParseException.class, () -> ScheduleTimeParser.parseDateTime("1-1-2024 10h00"));
+        assertThat(e.getErrorIndex(), is(11));
+        assertThat(e.getParsedString(), is("1-1-2024 10h00"));
+        e = assertThrows(DateTimeParseException.class, () -> ScheduleTimeParser.parseTime("10:61"));
+        assertThat(e.getErrorIndex(), is(3));
+    }
+
+    @Test
+    void agreesWithTheFormatters() {
+        String[] parts = {
+            "0", "1", "7", "12", "13", "23", "24", "29", "31", "32", "59", "60", "007", "2024", "0000", "2147483648",
+            "-", ":", " ", "AM", "pm", "x"
+        };
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder text = new StringBuilder();
+            if (random.nextBoolean()) {
+                text.append(parts[random.nextInt(10)]).append('-').append(random.nextInt(14)).append('-');
+                text.append(parts[random.nextInt(16)]).append(' ');
+            }
+            int date = text.length();
+            text.append(parts[random.nextInt(12)]).append(':').append(parts[random.nextInt(12)]);
+            if (random.nextBoolean()) {
+                text.append(':').append(parts[random.nextInt(12)]);
+            }
+            if (random.nextBoolean()) {
+                text.append(' ').append(parts[19 + random.nextInt(3)]);
+            }
+            if (random.nextInt(10) == 0) {
+                text.insert(random.nextInt(text.length()), parts[random.nextInt(parts.length)]);
+            }
+            String input = text.toString();
+            if (date > 0) {
+                assertThat(input, ScheduleTimeParser.tryParseDateTime(input), is(legacyDateTime(input)));
+            } else {
+                assertThat(input, ScheduleTimeParser.tryParseTime(input), is(legacyTime(input)));
+            }
+        }
+    }
+
+    private static LocalDateTime legacyDateTime(String text) {
+        for (DateTimeFormatter formatter : DATE_TIME_FORMATTERS) {
+            try {
+                return LocalDateTime.parse(text.trim().toUpperCase(Locale.ROOT), formatter);
+            } catch (DateTimeParseException e) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+
+    private static LocalTime legacyTime(String text) {
+        for (DateTimeFormatter formatter : TIME_FORMATTERS) {
+            try {
+                return LocalTime.parse(text.trim().toUpperCase(Locale.ROOT), formatter);
+            } catch (DateTimeParseException e) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,177 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScheduledBuildJournalTest {
+
+    private static final long DUE = 1_700_000_000_000L;
+
+    @TempDir
+    private File directory;
+
+    @Test
+    void replaysScheduleCancelAndFireEvents() throws Exception {
+        ScheduledBuild first = build("a", DUE);
+        ScheduledBuild second = build("b", DUE + 1);
+        ScheduledBuild third = build("c", DUE + 2);
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            journal.replay();
+            journal.scheduled(List.of(first, second, third));
+            journal.removed(ScheduledBuildJournal.CANCEL, List.of(first));
+            journal.removed(ScheduledBuildJournal.FIRE, List.of(third));
+        }
+
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            Map<String, ScheduledBuild> pending = journal.replay();
+            assertThat(pending.keySet(), contains(second.getId()));
+            ScheduledBuild replayed = pending.get(second.getId());
+            assertThat(replayed.getJobFullName(), is("b"));
+            assertThat(replayed.getDueTime(), is(DUE + 1));
+            assertThat(replayed.getUserId(), is("user"));
+        }
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws Exception {
+        ScheduledBuild first = build("a", DUE);
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            journal.replay();
+            journal.scheduled(List.of(first, build("b", DUE)));
+        }
+        File file = new File(directory, "journal.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // cut the last record in half, as a crash in the middle of a write would
+            raf.setLength(raf.length() - 10);
+        }
+
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            assertThat(journal.replay().keySet(), contains(first.getId()));
+            ScheduledBuild third = build("c", DUE);
+            journal.scheduled(List.of(third));
+        }
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            assertThat(journal.replay().size(), is(2));
+        }
+    }
+
+    @Test
+    void recordWithUnreadableParametersOnlySkipsThatBuild() throws Exception {
+        ScheduledBuild first = build("a", DUE);
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            journal.replay();
+            journal.scheduled(List.of(first));
+        }
+        // an intact record whose parameter type is gone, as after uninstalling the plugin that provided it
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeByte(ScheduledBuildJournal.SCHEDULE);
+        writeString(out, "unreadable");
+        writeString(out, "b");
+        out.writeLong(DUE);
+        out.writeBoolean(false);
+        out.writeByte(1);
+        writeString(out, "<no.such.plugin.UninstalledParameterValue/>");
+        byte[] data = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        try (DataOutputStream journal =
+                new DataOutputStream(new FileOutputStream(new File(directory, "journal.bin"), true))) {
+            journal.writeInt(data.length);
+            journal.writeInt((int) crc.getValue());
+            journal.write(data);
+        }
+
+        ScheduledBuild third = build("c", DUE);
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            assertThat(journal.replay().keySet(), contains(first.getId()));
+            journal.scheduled(List.of(third));
+        }
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            assertThat(journal.replay().keySet(), contains(first.getId(), third.getId()));
+        }
+    }
+
+    @Test
+    void compactionWritesSnapshotAndEmptiesJournal() throws Exception {
+        ScheduledBuild kept = build("a", DUE);
+        ScheduledBuild fired = build("b", DUE);
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            journal.replay();
+            journal.scheduled(List.of(kept, fired));
+            journal.removed(ScheduledBuildJournal.FIRE, List.of(fired));
+            assertThat(journal.getRecordCount(), is(3));
+            journal.compact(List.of(kept));
+            assertThat(journal.getRecordCount(), is(0));
+            assertThat(new File(directory, "journal.bin").length(), is(4L));
+            journal.scheduled(List.of(build("c", DUE)));
+        }
+
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            assertThat(journal.replay().size(), is(2));
+            assertThat(journal.getRecordCount(), is(1));
+        }
+    }
+
+    @Test
+    void replayOf100kPendingBuildsIsFast() throws Exception {
+        int count = 100_000;
+        List<ScheduledBuild> builds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            builds.add(build("folder/job-" + (i % 500), DUE + i * 1000L));
+        }
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            journal.replay();
+            journal.compact(builds.subList(0, count / 2));
+            journal.scheduled(builds.subList(count / 2, count));
+        }
+
+        long started = System.nanoTime();
+        Map<String, ScheduledBuild> pending;
+        try (ScheduledBuildJournal journal = new ScheduledBuildJournal(directory)) {
+            pending = journal.replay();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(pending.size(), is(count));
+        assertThat(elapsed, is(lessThan(TimeUnit.SECONDS.toMillis(1))));
+    }
+
+    @Test
+    void coalescePolicyKeepsLatestMissedBuildPerJob() {
+        ScheduledBuild early = build("a", DUE);
+        ScheduledBuild late = build("a", DUE + 1000);
+        ScheduledBuild other = build("b", DUE);
+
+        assertThat(CatchUpPolicy.COALESCE.discard(List.of(early, late, other)), contains(early));
+        assertThat(CatchUpPolicy.SKIP.discard(List.of(early, other)), contains(early, other));
+        assertThat(CatchUpPolicy.FIRE.discard(List.of(early, other)).size(), is(0));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ScheduledBuild build(String job, long due) {
+        return new ScheduledBuild(job, due, "user", List.of());
+    }
+}
@@ -0,0 +1,144 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.slaves.Cloud;
+import hudson.slaves.DumbSlave;
+import hudson.slaves.NodeProvisioner;
+import hudson.slaves.RetentionStrategy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduledBuildProvisioningStrategyTest {
+
+    private static final String LABEL = "scheduled";
+
+    /** How long the stand-in cloud takes to bring an agent online, on top of connecting it. */
+    private static final long LAUNCH_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    @Test
+    void agentIsOnlineWhenTheBuildIsDue(JenkinsRule j) throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setProvisioningLookahead(60);
+
+        StandInCloud cloud = new StandInCloud(j);
+        long latency = startLatency(j, cloud);
+
+        assertThat(cloud.provisionedAt, is(lessThan(cloud.dueTime)));
+        assertThat(latency, is(lessThan(LAUNCH_DELAY)));
+        assertThat(ScheduledBuildProvisioningStrategy.get().getRequested(), is(1L));
+        assertThat(ScheduledBuildMetrics.get().getGlobal().startDelay.getMax(), is(lessThan(LAUNCH_DELAY)));
+    }
+
+    @Test
+    void withoutLookaheadTheAgentIsLaunchedOnceTheBuildIsDue(JenkinsRule j) throws Exception {
+        StandInCloud cloud = new StandInCloud(j);
+        long latency = startLatency(j, cloud);
+
+        assertThat(cloud.provisionedAt, is(greaterThanOrEqualTo(cloud.dueTime)));
+        assertThat(latency, is(greaterThanOrEqualTo(LAUNCH_DELAY)));
+        assertThat(ScheduledBuildProvisioningStrategy.get().getRequested(), is(0L));
+    }
+
+    @Test
+    void demandIsCountedPerLabelWithinTheWindow(JenkinsRule j) throws Exception {
+        FreeStyleProject labeled = j.createFreeStyleProject();
+        labeled.setAssignedLabel(Label.get(LABEL));
+        FreeStyleProject anywhere = j.createFreeStyleProject();
+        long now = System.currentTimeMillis();
+        long hour = TimeUnit.HOURS.toMillis(1);
+        ScheduledBuildStore.get()
+                .scheduleAll(List.of(
+                        new ScheduledBuild(labeled.getFullName(), now + hour, null, List.of()),
+                        new ScheduledBuild(labeled.getFullName(), now + 2 * hour, null, List.of()),
+                        new ScheduledBuild(anywhere.getFullName(), now + hour, null, List.of()),
+                        new ScheduledBuild(anywhere.getFullName(), now + 3 * hour, null, List.of())));
+
+        assertThat(ScheduledBuildProvisioningStrategy.get().getDemand(now, 2 * hour), is(Map.of(LABEL, 2, "", 1)));
+    }
+
+    /**
+     * Schedules a build of a job only the stand-in cloud's agents can run and waits for it to start.
+     * @return milliseconds from the due time to the start of the build
+     */
+    private static long startLatency(JenkinsRule j, StandInCloud cloud) throws Exception {
+        j.jenkins.clouds.add(cloud);
+        Label label = Label.get(LABEL);
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.setAssignedLabel(label);
+        cloud.dueTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        ScheduledBuildStore.get().schedule(new ScheduledBuild(project.getFullName(), cloud.dueTime, null, List.of()));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+        FreeStyleBuild build;
+        while ((build = project.getLastBuild()) == null && System.currentTimeMillis() < deadline) {
+            // Reviews otherwise only start a while after startup, ask for them like the queue does
+            label.nodeProvisioner.suggestReviewNow();
+            Thread.sleep(500);
+        }
+        assertThat(build, is(notNullValue()));
+        j.waitForCompletion(build);
+        return build.getStartTimeInMillis() - cloud.dueTime;
+    }
+
+    /**
+     * Provides a single agent for {@link #LABEL}, which comes online {@link #LAUNCH_DELAY} after it was
+     * requested.
+     */
+    static final class StandInCloud extends Cloud {
+        private final transient JenkinsRule j;
+        volatile long dueTime;
+        volatile long provisionedAt = Long.MAX_VALUE;
+        private transient int launched;
+
+        StandInCloud(JenkinsRule j) {
+            super("stand-in");
+            this.j = j;
+        }
+
+        @Override
+        public boolean canProvision(CloudState state) {
+            return state.getLabel() != null && state.getLabel().getExpression().equals(LABEL);
+        }
+
+        @Override
+        public synchronized Collection<NodeProvisioner.PlannedNode> provision(CloudState state, int excessWorkload) {
+            if (launched > 0) {
+                return Collections.emptyList();
+            }
+            launched++;
+            provisionedAt = Math.min(provisionedAt, System.currentTimeMillis());
+            return List.of(new NodeProvisioner.PlannedNode(
+                    "stand-in-agent", Computer.threadPoolForRemoting.submit(this::launch), 1));
+        }
+
+        private Node launch() throws Exception {
+            Thread.sleep(LAUNCH_DELAY);
+            DumbSlave agent =
+                    new DumbSlave("stand-in-agent", j.createTmpDir().getPath(), j.createComputerLauncher(null));
+            agent.setLabelString(LABEL);
+            agent.setRetentionStrategy(RetentionStrategy.NOOP);
+            return agent;
+        }
+
+        @TestExtension
+        public static final class DescriptorImpl extends Descriptor<Cloud> {}
+    }
+}
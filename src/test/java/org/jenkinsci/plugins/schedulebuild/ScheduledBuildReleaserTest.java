@@ -0,0 +1,394 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterValue;
+import hudson.model.Queue;
+import hudson.model.StringParameterValue;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduledBuildReleaserTest {
+
+    private JenkinsRule j;
+    private FreeStyleProject project;
+    private ScheduledBuildStore store;
+    private ScheduledBuildReleaser releaser;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) throws Exception {
+        this.j = j;
+        project = j.createFreeStyleProject();
+        store = ScheduledBuildStore.get();
+        releaser = ExtensionList.lookupSingleton(ScheduledBuildReleaser.class);
+    }
+
+    @Test
+    void futureBuildStaysOutOfQueue() {
+        long now = System.currentTimeMillis();
+        store.schedule(new ScheduledBuild(project.getFullName(), now + TimeUnit.HOURS.toMillis(1), null, List.of()));
+
+        assertThat(releaser.release(now), is(0));
+        assertThat(store.size(), is(1));
+        assertThat(j.jenkins.getQueue().getItems().length, is(0));
+    }
+
+    @Test
+    void buildWithinLeadTimeIsReleased() throws Exception {
+        long now = System.currentTimeMillis();
+        long due = now + TimeUnit.MINUTES.toMillis(1);
+        store.schedule(new ScheduledBuild(project.getFullName(), due, null, List.of()));
+
+        // the periodic releaser may get there first, either way the build has to end up in the queue
+        releaser.release(now);
+        assertThat(store.size(), is(0));
+        Queue.Item item = awaitQueueItem();
+        assertThat(item, is(instanceOf(Queue.WaitingItem.class)));
+        assertThat(((Queue.WaitingItem) item).timestamp.getTimeInMillis(), is(greaterThanOrEqualTo(due)));
+    }
+
+    @Test
+    void quietPeriodEndsAtDueTime() throws Exception {
+        long now = System.currentTimeMillis();
+        long due = now + TimeUnit.MINUTES.toMillis(1) + 500;
+        store.schedule(new ScheduledBuild(project.getFullName(), due, null, List.of()));
+
+        releaser.release(now);
+        assertThat(store.size(), is(0));
+        long timestamp = ((Queue.WaitingItem) awaitQueueItem()).timestamp.getTimeInMillis();
+        assertThat(timestamp, is(greaterThanOrEqualTo(due)));
+        assertThat(timestamp, is(lessThan(due + 500)));
+    }
+
+    @Test
+    void leadTimeIsConfigurable() {
+        ScheduleBuildGlobalConfiguration.get().setReleaseLeadTime(0);
+        long now = System.currentTimeMillis();
+        store.schedule(new ScheduledBuild(project.getFullName(), now + TimeUnit.MINUTES.toMillis(1), null, List.of()));
+
+        assertThat(releaser.release(now), is(0));
+        assertThat(releaser.release(now + TimeUnit.MINUTES.toMillis(1)), is(1));
+    }
+
+    @Test
+    void buildsOfLimitedLabelAreReleasedAtTheConfiguredRate() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setReleaseRateLimits(List.of(new LabelRateLimit("", 1)));
+        FreeStyleProject second = j.createFreeStyleProject();
+        long now = System.currentTimeMillis();
+        store.scheduleAll(List.of(
+                new ScheduledBuild(project.getFullName(), now, null, List.of()),
+                new ScheduledBuild(second.getFullName(), now, null, List.of())));
+
+        // the periodic releaser may get there first, the second build has to wait for a token either way
+        releaser.release(now);
+        assertThat(store.size(), is(0));
+        assertThat(releaser.getHeld(), is(1));
+        assertThat(releaser.release(now + TimeUnit.MINUTES.toMillis(2)), is(1));
+        assertThat(releaser.getHeld(), is(0));
+    }
+
+    @Test
+    void heldBuildsStayInTheJournalUntilTheyAreReleased() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setReleaseRateLimits(List.of(new LabelRateLimit("", 1)));
+        long now = System.currentTimeMillis();
+        long due = now + TimeUnit.MINUTES.toMillis(1);
+        store.scheduleAll(List.of(
+                new ScheduledBuild(project.getFullName(), due, null, List.of()),
+                new ScheduledBuild(project.getFullName(), due, null, List.of())));
+
+        // Both builds are held until they are due, a crash now must not lose them
+        assertThat(releaser.release(now), is(0));
+        assertThat(store.size(), is(0));
+        assertThat(releaser.getHeld(), is(2));
+        assertThat(reload().size(), is(2));
+
+        assertThat(releaser.release(due), is(1));
+        assertThat(reload().size(), is(1));
+    }
+
+    @Test
+    void startedBuildIsMeasured() throws Exception {
+        long now = System.currentTimeMillis();
+        store.schedule(new ScheduledBuild(project.getFullName(), now, null, List.of()));
+        releaser.release(now);
+        j.waitUntilNoActivity();
+
+        FreeStyleBuild build = project.getLastBuild();
+        assertThat(build.getAction(ScheduledBuildTiming.class), is(nullValue()));
+        ScheduledBuildMetrics.Stats global = ScheduledBuildMetrics.get().getGlobal();
+        assertThat(global.startDelay.getCount(), is(1L));
+        assertThat(global.executorWait.getCount(), is(1L));
+        assertThat(global.startDelay.getMax(), is(greaterThanOrEqualTo(global.executorWait.getMax())));
+        JSONObject perJob =
+                ScheduledBuildMetrics.get().toJSON().getJSONObject("jobs").getJSONObject(project.getFullName());
+        assertThat(perJob.getJSONObject("startDelay").getLong("count"), is(1L));
+    }
+
+    @Test
+    void metricsFollowRenamedJobsAndAreDroppedWithDeletedOnes() throws Exception {
+        ScheduledBuildMetrics metrics = ScheduledBuildMetrics.get();
+        long now = System.currentTimeMillis();
+        metrics.record(project.getFullName(), now - 2000, now - 1000, now);
+
+        project.renameTo("renamed");
+        assertThat(metrics.toJSON().getJSONObject("jobs").keySet(), contains("renamed"));
+        project.delete();
+        assertThat(metrics.toJSON().getJSONObject("jobs").isEmpty(), is(true));
+    }
+
+    @Test
+    void buildOfDeletedJobIsDropped() throws Exception {
+        long now = System.currentTimeMillis();
+        store.schedule(new ScheduledBuild(project.getFullName(), now, null, List.of()));
+        project.delete();
+
+        assertThat(releaser.release(now), is(0));
+        assertThat(store.size(), is(0));
+    }
+
+    @Test
+    void pendingBuildsArePersisted() throws Exception {
+        long due = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), due, "alice", List.of());
+        ScheduledBuild cancelled = new ScheduledBuild(project.getFullName(), due, "bob", List.of());
+        store.schedule(build);
+        store.schedule(cancelled);
+        store.cancel(cancelled.getId());
+
+        ScheduledBuildStore reloaded = new ScheduledBuildStore();
+        reloaded.load(ScheduledBuildStore.getJournalDirectory());
+        reloaded.close();
+        assertThat(reloaded.size(), is(1));
+        ScheduledBuild loaded = reloaded.getById(build.getId());
+        assertThat(loaded.getJobFullName(), is(project.getFullName()));
+        assertThat(loaded.getDueTime(), is(due));
+        assertThat(loaded.getUserId(), is("alice"));
+    }
+
+    @Test
+    void parametersArePersisted() throws Exception {
+        long due = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuild build = new ScheduledBuild(
+                project.getFullName(), due, null, List.of(new StringParameterValue("PARAM", "value")));
+        store.schedule(build);
+
+        ScheduledBuildStore reloaded = new ScheduledBuildStore();
+        reloaded.load(ScheduledBuildStore.getJournalDirectory());
+        reloaded.close();
+        assertThat(
+                reloaded.getById(build.getId()).getParameters(),
+                contains(new StringParameterValue("PARAM", "value")));
+    }
+
+    @Test
+    void unreadableJournalIsMovedAsideAndReplaced() throws Exception {
+        File directory = new File(j.jenkins.getRootDir(), "corrupt-journal");
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, "journal.bin").toPath(), "not a journal".getBytes(StandardCharsets.UTF_8));
+        long due = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), due, "alice", List.of());
+
+        ScheduledBuildStore corrupt = new ScheduledBuildStore();
+        corrupt.load(directory);
+        assertThat(corrupt.size(), is(0));
+        corrupt.schedule(build);
+        corrupt.close();
+        assertThat(directory.list((dir, name) -> name.startsWith("journal.bin.unreadable-")).length, is(1));
+
+        ScheduledBuildStore reloaded = new ScheduledBuildStore();
+        reloaded.load(directory);
+        reloaded.close();
+        assertThat(reloaded.size(), is(1));
+        assertThat(reloaded.getById(build.getId()).getUserId(), is("alice"));
+    }
+
+    @Test
+    void recurringBuildIsRescheduledWhenReleased() throws Exception {
+        long now = System.currentTimeMillis();
+        Recurrence recurrence =
+                new Recurrence(RecurrenceUnit.HOURS, 1, now, ZoneId.systemDefault(), Recurrence.FOREVER, 0);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), null, List.of(), recurrence);
+        store.schedule(build);
+
+        // the periodic releaser may get there first and hand the build over on a timer, the next occurrence is
+        // added once it was
+        releaser.release(now);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        ScheduledBuild next;
+        while ((next = store.getById(build.getId())) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(next.getOccurrence(), is(1));
+        assertThat(next.getDueTime(), is(now + TimeUnit.HOURS.toMillis(1)));
+
+        ScheduledBuild loaded = reload().getById(build.getId());
+        assertThat(loaded.getOccurrence(), is(1));
+        assertThat(loaded.getRecurrence(), is(recurrence));
+    }
+
+    @Test
+    void rejectedOccurrenceInBlackoutWindowIsSkipped() throws Exception {
+        long now = System.currentTimeMillis();
+        ScheduledBuild next = recurAcrossBlackoutWindow(now);
+        assertThat(next.getOccurrence(), is(2));
+        assertThat(next.getDueTime(), is(now + TimeUnit.HOURS.toMillis(2)));
+    }
+
+    @Test
+    void occurrenceInBlackoutWindowIsMovedToItsEnd() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setBlackoutPolicy(BlackoutPolicy.MOVE_TO_END);
+        long now = System.currentTimeMillis();
+        ScheduledBuild next = recurAcrossBlackoutWindow(now);
+        assertThat(next.getOccurrence(), is(1));
+        long windowStart = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(now + TimeUnit.HOURS.toMillis(1)));
+        assertThat(next.getDueTime(), is(windowStart + TimeUnit.MINUTES.toMillis(10)));
+    }
+
+    @Test
+    void blackoutWindowAddedAfterSchedulingAppliesOnRelease() throws Exception {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        long due = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()))
+                + TimeUnit.MINUTES.toMillis(10);
+        store.schedule(new ScheduledBuild(project.getFullName(), due, null, List.of()));
+        config.setBlackoutWindows(List.of(new BlackoutWindow(config.formatDateTime(due), 30)));
+
+        assertThat(releaser.release(due), is(0));
+        assertThat(store.size(), is(0));
+        assertThat(reload().size(), is(0));
+
+        // Released later than the window start, so the wheel has not passed it yet
+        config.setBlackoutPolicy(BlackoutPolicy.MOVE_TO_END);
+        long later = due + TimeUnit.MINUTES.toMillis(10);
+        ScheduledBuild moved = store.schedule(new ScheduledBuild(project.getFullName(), later, null, List.of()));
+        assertThat(releaser.release(later), is(0));
+        long end = due + TimeUnit.MINUTES.toMillis(30);
+        assertThat(store.getById(moved.getId()).getDueTime(), is(end));
+        assertThat(reload().getById(moved.getId()).getDueTime(), is(end));
+        assertThat(j.jenkins.getQueue().getItems().length, is(0));
+    }
+
+    @Test
+    void skippedOccurrenceDoesNotEndRecurrence() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setCatchUpPolicy(CatchUpPolicy.SKIP);
+        long now = System.currentTimeMillis();
+        long start = now - TimeUnit.HOURS.toMillis(10) - 1;
+        Recurrence recurrence =
+                new Recurrence(RecurrenceUnit.HOURS, 1, start, ZoneId.systemDefault(), Recurrence.FOREVER, 0);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), null, List.of(), recurrence);
+        store.schedule(build);
+
+        store.load(ScheduledBuildStore.getJournalDirectory());
+        ScheduledBuild next = store.getById(build.getId());
+        assertThat(next.getOccurrence(), is(11));
+        assertThat(next.getDueTime(), is(greaterThanOrEqualTo(now)));
+    }
+
+    @Test
+    void missedBuildsFollowCatchUpPolicy() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setCatchUpPolicy(CatchUpPolicy.SKIP);
+        long now = System.currentTimeMillis();
+        store.schedule(new ScheduledBuild(project.getFullName(), now - TimeUnit.HOURS.toMillis(1), null, List.of()));
+        store.schedule(new ScheduledBuild(project.getFullName(), now + TimeUnit.HOURS.toMillis(1), null, List.of()));
+
+        store.load(ScheduledBuildStore.getJournalDirectory());
+        assertThat(store.size(), is(1));
+        assertThat(store.getPending().get(0).getDueTime(), is(greaterThanOrEqualTo(now)));
+    }
+
+    @Test
+    void duplicateSchedulesAreCoalesced() throws Exception {
+        ScheduleBuildGlobalConfiguration.get().setCoalescingWindow(300);
+        long due = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        List<ParameterValue> parameters = List.of(new StringParameterValue("PARAM", "value"));
+        ScheduledBuild first = new ScheduledBuild(project.getFullName(), due, "alice", parameters);
+        ScheduledBuild duplicate = new ScheduledBuild(project.getFullName(), due + 240_000, "bob", parameters);
+        ScheduledBuild other = new ScheduledBuild(project.getFullName(), due + 240_000, "bob", List.of());
+        ScheduledBuild later = new ScheduledBuild(project.getFullName(), due + 600_000, "carol", parameters);
+
+        List<ScheduledBuild> scheduled = store.scheduleAll(List.of(first, duplicate, other, later));
+        assertThat(scheduled.get(1).getId(), is(first.getId()));
+        assertThat(scheduled.get(2).getId(), is(other.getId()));
+        assertThat(scheduled.get(3).getId(), is(later.getId()));
+        // Requests for a slightly earlier time are merged too, whichever bucket they fall in
+        ScheduledBuild earlier = new ScheduledBuild(project.getFullName(), due - 60_000, null, parameters);
+        ScheduledBuild merged = store.schedule(earlier);
+        assertThat(merged.getId(), is(first.getId()));
+        assertThat(store.size(), is(3));
+
+        ScheduledBuildStore reloaded = new ScheduledBuildStore();
+        reloaded.load(ScheduledBuildStore.getJournalDirectory());
+        reloaded.close();
+        ScheduledBuild loaded = reloaded.getById(first.getId());
+        assertThat(loaded.getDueTime(), is(due));
+        assertThat(loaded.getUserId(), is("alice"));
+        assertThat(loaded.getCoalescedUserIds(), contains("bob", null));
+
+        store.cancelAll(List.of(other.getId(), later.getId()));
+        releaser.release(due);
+        j.waitUntilNoActivity();
+        FreeStyleBuild build = project.getLastBuild();
+        assertThat(project.getBuilds().size(), is(1));
+        assertThat(build.getCauses().size(), is(3));
+    }
+
+    /**
+     * Releases the first occurrence of an hourly build while the second one is in a ten minute blackout window.
+     * @return the occurrence scheduled next
+     */
+    private ScheduledBuild recurAcrossBlackoutWindow(long now) throws InterruptedException {
+        ScheduleBuildGlobalConfiguration config = ScheduleBuildGlobalConfiguration.get();
+        config.setBlackoutWindows(
+                List.of(new BlackoutWindow(config.formatDateTime(now + TimeUnit.HOURS.toMillis(1)), 10)));
+        Recurrence recurrence =
+                new Recurrence(RecurrenceUnit.HOURS, 1, now, ZoneId.systemDefault(), Recurrence.FOREVER, 0);
+        ScheduledBuild build = new ScheduledBuild(project.getFullName(), null, List.of(), recurrence);
+        store.schedule(build);
+
+        // the periodic releaser may get there first and hand the build over on a timer
+        releaser.release(now);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        ScheduledBuild next;
+        while ((next = store.getById(build.getId())) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        return next;
+    }
+
+    private static ScheduledBuildStore reload() throws Exception {
+        ScheduledBuildStore reloaded = new ScheduledBuildStore();
+        reloaded.load(ScheduledBuildStore.getJournalDirectory());
+        reloaded.close();
+        return reloaded;
+    }
+
+    private Queue.Item awaitQueueItem() throws InterruptedException {
+        // builds that are not due on a whole second are handed to the queue by a timer
+        for (int i = 0; i < 50; i++) {
+            Queue.Item item = j.jenkins.getQueue().getItem(project);
+            if (item != null) {
+                return item;
+            }
+            Thread.sleep(100);
+        }
+        return j.jenkins.getQueue().getItem(project);
+    }
+}
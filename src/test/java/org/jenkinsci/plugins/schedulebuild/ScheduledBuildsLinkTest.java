@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import hudson.model.FreeStyleProject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.htmlunit.html.HtmlAnchor;
+import org.htmlunit.html.HtmlPage;
+import org.htmlunit.html.HtmlTable;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ScheduledBuildsLinkTest {
+
+    @Test
+    void listsPendingBuildsPageByPage(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject("project");
+        long base = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < 3; i++) {
+            ScheduledBuildStore.get().schedule(new ScheduledBuild(project.getFullName(), base + i, "alice", List.of()));
+        }
+
+        HtmlPage page = j.createWebClient().goTo("manage/scheduled-builds/?limit=2");
+        HtmlTable table = page.getHtmlElementById("schedule-build-pending");
+        assertThat(table.getBodies().get(0).getRows().size(), is(2));
+        assertThat(table.asNormalizedText(), containsString("alice"));
+
+        HtmlAnchor next = page.getHtmlElementById("schedule-build-next-page");
+        HtmlPage second = next.click();
+        table = second.getHtmlElementById("schedule-build-pending");
+        assertThat(table.getBodies().get(0).getRows().size(), is(1));
+    }
+}
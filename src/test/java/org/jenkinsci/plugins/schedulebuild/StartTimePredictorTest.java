@@ -0,0 +1,105 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.util.FormValidation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class StartTimePredictorTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    void durationIsAMovingAverageOfCompletedBuilds(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        StartTimePredictor predictor = StartTimePredictor.get();
+
+        assertThat(predictor.getDuration(project), is(-1L));
+        predictor.record(project.getFullName(), 8 * MINUTE);
+        assertThat(predictor.getDuration(project), is(8 * MINUTE));
+        predictor.record(project.getFullName(), 4 * MINUTE);
+        assertThat(predictor.getDuration(project), is(7 * MINUTE));
+        j.buildAndAssertSuccess(project);
+        assertThat(predictor.getDuration(project), is(lessThan(7 * MINUTE)));
+    }
+
+    @Test
+    void durationFollowsRenamedJobsAndIsDroppedWithDeletedOnes(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        StartTimePredictor predictor = StartTimePredictor.get();
+        predictor.record(project.getFullName(), 8 * MINUTE);
+
+        project.renameTo("renamed");
+        assertThat(predictor.getDuration(project), is(8 * MINUTE));
+        project.delete();
+        // A new job under the same name starts without history
+        assertThat(predictor.getDuration(j.createFreeStyleProject("renamed")), is(-1L));
+    }
+
+    @Test
+    void buildWaitsForTheExecutorsOfEarlierScheduledBuilds(JenkinsRule j) throws Exception {
+        j.jenkins.setNumExecutors(1);
+        FreeStyleProject busy = j.createFreeStyleProject();
+        FreeStyleProject project = j.createFreeStyleProject();
+        StartTimePredictor predictor = StartTimePredictor.get();
+        predictor.record(busy.getFullName(), 20 * MINUTE);
+        predictor.record(project.getFullName(), 5 * MINUTE);
+        long now = System.currentTimeMillis();
+        long time = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(now)) + TimeUnit.HOURS.toMillis(1);
+        ScheduledBuildStore.get()
+                .scheduleAll(List.of(
+                        new ScheduledBuild(busy.getFullName(), time - 10 * MINUTE, null, List.of()),
+                        new ScheduledBuild(busy.getFullName(), time, null, List.of())));
+
+        StartTimePredictor.Prediction prediction = predictor.predict(project, time, now);
+
+        // The first build runs until 10 minutes after the time, the second one for 20 more minutes
+        assertThat(prediction.start, is(time + 30 * MINUTE));
+        assertThat(prediction.end, is(time + 35 * MINUTE));
+        assertThat(predictor.predict(project, time - 20 * MINUTE, now).start, is(time - 20 * MINUTE));
+
+        ScheduleBuildAction action = project.getAction(ScheduleBuildAction.class);
+        FormValidation validation = action.doCheckDate(action.formatTime(time), project);
+        assertThat(validation.kind, is(FormValidation.Kind.OK));
+        assertThat(
+                validation.getMessage(),
+                is("Expected to start at " + action.formatTime(time + 30 * MINUTE) + " and to end around "
+                        + action.formatTime(time + 35 * MINUTE)));
+    }
+
+    @Test
+    void noPredictionWithoutAnOnlineExecutor(JenkinsRule j) throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.setAssignedLabel(Label.get("nowhere"));
+        long time = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+        assertThat(StartTimePredictor.get().predict(project, time, System.currentTimeMillis()), is(nullValue()));
+        ScheduleBuildAction action = project.getAction(ScheduleBuildAction.class);
+        FormValidation validation = action.doCheckDate(action.formatTime(time), project);
+        assertThat(validation.kind, is(FormValidation.Kind.OK));
+        assertThat(validation.getMessage(), is(Messages.ScheduleBuildAction_NoExecutorOnline()));
+    }
+
+    @Test
+    void latestPendingBuildsAreFoundFirst(JenkinsRule j) throws Exception {
+        long time = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        ScheduledBuild early = new ScheduledBuild("early", time - MINUTE, null, List.of());
+        ScheduledBuild due = new ScheduledBuild("due", time, null, List.of());
+        ScheduledBuild late = new ScheduledBuild("late", time + 1, null, List.of());
+        ScheduledBuildStore.get().scheduleAll(List.of(early, due, late));
+
+        assertThat(ScheduledBuildStore.get().findLatest(time - MINUTE, time, 10), is(List.of(due, early)));
+        assertThat(ScheduledBuildStore.get().findLatest(time - MINUTE, time, 1), is(List.of(due)));
+        assertThat(ScheduledBuildStore.get().findLatest(time - MINUTE + 1, time, 10), is(List.of(due)));
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link TimingWheel} with 100k entries spread over a week: adding them, and advancing one second at a
+ * time over the whole week until all of them have expired. Both are reported per entry.
+ */
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+
+    private static final int COUNT = 100_000;
+    private static final long TICK = 1000;
+    private static final long START = 1_700_000_000_000L;
+    private static final long HORIZON = TimeUnit.DAYS.toMillis(7);
+    private static final Object PAYLOAD = new Object();
+
+    private final long[] deadlines = new long[COUNT];
+    private TimingWheel<Object> wheel;
+    private long expired;
+
+    @Setup(Level.Trial)
+    public void createDeadlines() {
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            deadlines[i] = START + (long) (random.nextDouble() * HORIZON);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillWheel() {
+        wheel = add();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public TimingWheel<Object> addEntries() {
+        return add();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long advanceOverAWeek() {
+        for (long time = START; time <= START + HORIZON + TICK; time += TICK) {
+            wheel.advance(time, payload -> expired++);
+        }
+        return expired;
+    }
+
+    private TimingWheel<Object> add() {
+        TimingWheel<Object> wheel = new TimingWheel<>(TICK, 8, START);
+        for (long deadline : deadlines) {
+            wheel.add(PAYLOAD, deadline);
+        }
+        return wheel;
+    }
+}
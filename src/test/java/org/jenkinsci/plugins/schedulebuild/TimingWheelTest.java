@@ -0,0 +1,130 @@
+package org.jenkinsci.plugins.schedulebuild;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void expiresOnlyOnceDeadlineHasPassed() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, START);
+        wheel.add("a", START + 2500);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + 2000, expired::add);
+        assertThat(expired, is(empty()));
+        wheel.advance(START + 2999, expired::add);
+        assertThat(expired, is(empty()));
+        wheel.advance(START + 3000, expired::add);
+        assertThat(expired, contains("a"));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    void pastDeadlineExpiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, START);
+        wheel.add("late", START - TimeUnit.HOURS.toMillis(1));
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + TICK, expired::add);
+        assertThat(expired, contains("late"));
+    }
+
+    @Test
+    void cancelledEntryNeverExpires() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, START);
+        TimingWheel.Entry<String> entry = wheel.add("a", START + TimeUnit.DAYS.toMillis(3));
+        wheel.add("b", START + TimeUnit.DAYS.toMillis(3));
+
+        assertThat(wheel.cancel(entry), is(true));
+        assertThat(wheel.cancel(entry), is(false));
+        List<String> expired = new ArrayList<>();
+        wheel.advance(START + TimeUnit.DAYS.toMillis(4), expired::add);
+        assertThat(expired, contains("b"));
+    }
+
+    @Test
+    void expiresInDeadlineOrderAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 2, START);
+        for (long offset : new long[] {TimeUnit.DAYS.toMillis(2), 5_000, TimeUnit.MINUTES.toMillis(10), 70_000}) {
+            wheel.add(offset, START + offset);
+        }
+        List<Long> expired = new ArrayList<>();
+        for (long time = START; wheel.size() > 0; time += TICK) {
+            wheel.advance(time, expired::add);
+        }
+        assertThat(expired, contains(5_000L, 70_000L, TimeUnit.MINUTES.toMillis(10), TimeUnit.DAYS.toMillis(2)));
+    }
+
+    /**
+     * Fires 100k randomly spread entries with a clock advancing one tick at a time and checks that every entry
+     * fires within one tick of its deadline. How long that takes is measured by {@link TimingWheelBenchmark}.
+     */
+    @Test
+    void firingLatencyIsBoundedByTick() {
+        int count = 100_000;
+        long horizon = TimeUnit.DAYS.toMillis(7);
+        TimingWheel<long[]> wheel = new TimingWheel<>(TICK, 8, START);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            long deadline = START + (long) (random.nextDouble() * horizon);
+            wheel.add(new long[] {deadline}, deadline);
+        }
+
+        long[] maxLatency = {0};
+        int[] fired = {0};
+        for (long time = START; time <= START + horizon + TICK; time += TICK) {
+            long now = time;
+            wheel.advance(now, payload -> {
+                assertThat(payload[0], is(lessThanOrEqualTo(now)));
+                maxLatency[0] = Math.max(maxLatency[0], now - payload[0]);
+                fired[0]++;
+            });
+        }
+
+        assertThat(fired[0], is(count));
+        assertThat(maxLatency[0], is(lessThan(TICK)));
+    }
+
+    /**
+     * Each pending entry is a single node in one slot, and the slots only grow with the range of the deadlines,
+     * not with the number of entries.
+     */
+    @Test
+    void entriesAreLinkedIntoTheLevelCoveringTheirDistance() {
+        int count = 100_000;
+        TimingWheel<Object> wheel = new TimingWheel<>(TICK, 8, START);
+        Object payload = new Object();
+        int[] expected = new int[3];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            long deadline = START + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(30));
+            wheel.add(payload, deadline);
+            long ticks = Math.max(1, (deadline - START + TICK - 1) / TICK);
+            expected[ticks < 1 << 8 ? 0 : ticks < 1 << 16 ? 1 : 2]++;
+        }
+
+        assertThat(wheel.size(), is(count));
+        // 30 days are 2.6M ticks, within the 2^24 ticks of three levels of 256 slots
+        assertThat(wheel.getSlotCount(), is(3 * 256));
+        assertThat(wheel.getEntriesPerLevel(), is(expected));
+
+        wheel.advance(START + TimeUnit.DAYS.toMillis(15), ignored -> {});
+        int[] entries = wheel.getEntriesPerLevel();
+        assertThat(entries[0] + entries[1] + entries[2], is(wheel.size()));
+        assertThat(wheel.getSlotCount(), is(3 * 256));
+    }
+}